@@ -3,6 +3,8 @@ package org.pac4j.undertow.account;
 import io.undertow.security.idm.Account;
 import org.pac4j.core.profile.ProfileHelper;
 import org.pac4j.core.profile.UserProfile;
+import org.pac4j.undertow.profile.EncodedProfiles;
+import org.pac4j.undertow.profile.ProfileCodec;
 
 import java.security.Principal;
 import java.util.HashSet;
@@ -18,9 +20,11 @@ import java.util.Set;
  */
 public class Pac4jAccount implements Account {
 
-    private final List<UserProfile> profiles;
+    private List<UserProfile> profiles;
     private final Set<String> roles;
     private final Principal principal;
+    private final EncodedProfiles encodedProfiles;
+    private final ProfileCodec profileCodec;
 
     public Pac4jAccount(final LinkedHashMap<String, UserProfile> profiles) {
         this.roles = new HashSet<>();
@@ -31,6 +35,23 @@ public class Pac4jAccount implements Account {
         }
         final UserProfile profile = ProfileHelper.flatIntoOneProfile(this.profiles).get();
         this.principal = () -> profile.getId();
+        this.encodedProfiles = null;
+        this.profileCodec = null;
+    }
+
+    /**
+     * Build the account from the encoded profiles: the principal and the roles are read directly,
+     * the profiles are only decoded when {@link #getProfile()} or {@link #getProfiles()} is called.
+     *
+     * @param encodedProfiles the encoded profiles
+     * @param profileCodec the codec used to encode the profiles
+     */
+    public Pac4jAccount(final EncodedProfiles encodedProfiles, final ProfileCodec profileCodec) {
+        this.roles = encodedProfiles.getRoles();
+        final String principalId = encodedProfiles.getPrincipalId();
+        this.principal = () -> principalId;
+        this.encodedProfiles = encodedProfiles;
+        this.profileCodec = profileCodec;
     }
 
     @Override
@@ -49,7 +70,7 @@ public class Pac4jAccount implements Account {
      * @return the main profile
      */
     public UserProfile getProfile() {
-        return ProfileHelper.flatIntoOneProfile(this.profiles).get();
+        return ProfileHelper.flatIntoOneProfile(getProfiles()).get();
     }
 
     /**
@@ -58,6 +79,9 @@ public class Pac4jAccount implements Account {
      * @return the list of profiles
      */
     public List<UserProfile> getProfiles() {
+        if (this.profiles == null) {
+            this.profiles = ProfileHelper.flatIntoAProfileList(encodedProfiles.getProfiles(profileCodec));
+        }
         return this.profiles;
     }
 }
@@ -0,0 +1,24 @@
+package org.pac4j.undertow.context;
+
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.context.session.SessionStore;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.matching.matcher.csrf.CsrfTokenGenerator;
+
+/**
+ * CSRF token generator relying on the {@link StatelessCsrfTokens} of the {@link UndertowSessionStore}:
+ * the token is not written in the session.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class StatelessCsrfTokenGenerator implements CsrfTokenGenerator {
+
+    @Override
+    public String get(final WebContext context, final SessionStore sessionStore) {
+        if (sessionStore instanceof UndertowSessionStore undertowSessionStore && undertowSessionStore.getCsrfTokens() != null) {
+            return undertowSessionStore.getCsrfToken(context);
+        }
+        throw new TechnicalException("The StatelessCsrfTokenGenerator requires an UndertowSessionStore with csrfTokens");
+    }
+}
@@ -0,0 +1,173 @@
+package org.pac4j.undertow.context;
+
+import io.undertow.server.session.Session;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.util.CommonHelper;
+import org.pac4j.core.util.Pac4jConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * CSRF tokens derived from a per-session random seed and a time window with an HMAC, instead of being saved in the session.
+ *
+ * When set on the {@link UndertowSessionStore}, the CSRF attributes are computed on read: the only session writes are the seed,
+ * once per session, and the marker of the consumed previous window, at most once per window. It must be used with the
+ * {@link StatelessCsrfTokenGenerator}: with the default pac4j generator, the generated tokens are never saved and every
+ * protected POST request is rejected (a warning is logged on the first attempt).
+ *
+ * <p>Compared to the default pac4j tokens:</p>
+ * <ul>
+ * <li>the current token is valid for all the requests of its time window and not renewed at each request;</li>
+ * <li>the token of the previous window is accepted once, until the <code>CsrfAuthorizer</code> clears it;</li>
+ * <li>the seed is copied along the other attributes on session renewal, so the tokens survive a login.</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class StatelessCsrfTokens {
+
+    /** Session attribute of the random seed of the tokens */
+    public static final String SEED_ATTRIBUTE = "pac4jCsrfSeed";
+
+    /** Session attribute of the last time window whose token has been consumed as the previous token */
+    public static final String CONSUMED_WINDOW_ATTRIBUTE = "pac4jCsrfConsumedWindow";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatelessCsrfTokens.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final int SEED_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec key;
+
+    private final long windowMillis;
+
+    private final ThreadLocal<Mac> macs;
+
+    private final AtomicBoolean generatorWarned = new AtomicBoolean();
+
+    /**
+     * Build the stateless CSRF tokens.
+     *
+     * @param secret the HMAC secret (shared by all the nodes of the cluster)
+     * @param windowMillis the duration of a time window: a token is accepted during its window and once in the next one
+     */
+    public StatelessCsrfTokens(final byte[] secret, final long windowMillis) {
+        CommonHelper.assertNotNull("secret", secret);
+        CommonHelper.assertTrue(windowMillis > 0, "windowMillis must be positive");
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.windowMillis = windowMillis;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    private Mac newMac() {
+        try {
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (final GeneralSecurityException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    /**
+     * Whether the session key is a CSRF attribute handled by these tokens.
+     *
+     * @param key the session key
+     * @return whether the key is handled
+     */
+    public boolean handles(final String key) {
+        return Pac4jConstants.CSRF_TOKEN.equals(key) || Pac4jConstants.PREVIOUS_CSRF_TOKEN.equals(key)
+                || Pac4jConstants.CSRF_TOKEN_EXPIRATION_DATE.equals(key);
+    }
+
+    /**
+     * Compute the value of a CSRF attribute for a session.
+     *
+     * @param key the session key
+     * @param session the Undertow session
+     * @return the attribute value, <code>null</code> if no token has been generated for the session
+     */
+    public Object get(final String key, final Session session) {
+        final String seed = (String) session.getAttribute(SEED_ATTRIBUTE);
+        if (seed == null) {
+            return null;
+        }
+        final long window = currentWindow();
+        if (Pac4jConstants.CSRF_TOKEN.equals(key)) {
+            return token(seed, window);
+        } else if (Pac4jConstants.PREVIOUS_CSRF_TOKEN.equals(key)) {
+            final Long consumedWindow = (Long) session.getAttribute(CONSUMED_WINDOW_ATTRIBUTE);
+            return consumedWindow != null && consumedWindow >= window - 1 ? null : token(seed, window - 1);
+        } else if (Pac4jConstants.CSRF_TOKEN_EXPIRATION_DATE.equals(key)) {
+            return (window + 1) * windowMillis;
+        }
+        return null;
+    }
+
+    /**
+     * Handle the write of a CSRF attribute: clearing the previous token consumes it, the other writes are ignored.
+     *
+     * @param key the session key
+     * @param value the attribute value
+     * @param session the Undertow session
+     */
+    public void set(final String key, final Object value, final Session session) {
+        if (Pac4jConstants.PREVIOUS_CSRF_TOKEN.equals(key) && value == null) {
+            final long previousWindow = currentWindow() - 1;
+            final Long consumedWindow = (Long) session.getAttribute(CONSUMED_WINDOW_ATTRIBUTE);
+            if (consumedWindow == null || consumedWindow < previousWindow) {
+                session.setAttribute(CONSUMED_WINDOW_ATTRIBUTE, previousWindow);
+            }
+        } else if (Pac4jConstants.CSRF_TOKEN.equals(key) && value != null && generatorWarned.compareAndSet(false, true)) {
+            LOGGER.warn("A CSRF token generated outside of the StatelessCsrfTokenGenerator is ignored: "
+                    + "define the StatelessCsrfTokenGenerator on the CSRF matcher or the requests will be rejected");
+        }
+    }
+
+    /**
+     * Compute the current CSRF token of a session, creating its seed if necessary.
+     *
+     * @param session the Undertow session
+     * @return the CSRF token
+     */
+    public String currentToken(final Session session) {
+        String seed = (String) session.getAttribute(SEED_ATTRIBUTE);
+        if (seed == null) {
+            final byte[] bytes = new byte[SEED_LENGTH];
+            RANDOM.nextBytes(bytes);
+            seed = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            session.setAttribute(SEED_ATTRIBUTE, seed);
+        }
+        return token(seed, currentWindow());
+    }
+
+    private long currentWindow() {
+        return System.currentTimeMillis() / windowMillis;
+    }
+
+    protected String token(final String seed, final long window) {
+        final Mac mac = macs.get();
+        mac.update(seed.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) ':');
+        for (int i = 56; i >= 0; i -= 8) {
+            mac.update((byte) (window >>> i));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal());
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+}
@@ -1,12 +1,13 @@
 package org.pac4j.undertow.context;
 
+import io.undertow.server.HttpServerExchange;
 import org.pac4j.core.context.FrameworkParameters;
 import org.pac4j.core.context.WebContext;
 import org.pac4j.core.context.WebContextFactory;
 import org.pac4j.core.exception.TechnicalException;
 
 /**
- * Specific web context factory.
+ * Specific web context factory: the web context is created once per exchange and saved as an attachment.
  *
  * @author Jerome LELEU
  * @since 5.0.0
@@ -18,7 +19,13 @@ public class UndertowContextFactory implements WebContextFactory {
     @Override
     public WebContext newContext(FrameworkParameters parameters) {
         if (parameters instanceof UndertowParameters undertowParameters) {
-            return new UndertowWebContext(undertowParameters.exchange());
+            final HttpServerExchange exchange = undertowParameters.exchange();
+            UndertowWebContext context = exchange.getAttachment(UndertowWebContext.ATTACHMENT_KEY);
+            if (context == null) {
+                context = new UndertowWebContext(exchange);
+                exchange.putAttachment(UndertowWebContext.ATTACHMENT_KEY, context);
+            }
+            return context;
         }
         throw new TechnicalException("Bad parameters type");
     }
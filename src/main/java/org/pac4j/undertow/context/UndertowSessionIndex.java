@@ -0,0 +1,335 @@
+package org.pac4j.undertow.context;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.session.Session;
+import io.undertow.server.session.SessionListener;
+import io.undertow.server.session.SessionManager;
+import org.pac4j.core.profile.BasicUserProfile;
+import org.pac4j.core.profile.UserProfile;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Index from principal identifiers and identity provider session identifiers to Undertow session identifiers.
+ *
+ * It is kept up to date by listening to the {@link SessionManager}, so that a back-channel logout can find
+ * and invalidate the sessions of a user without scanning all the Undertow sessions.
+ *
+ * <p>To use it for the pac4j logout, register it on the session manager, set it on the {@link UndertowSessionStoreFactory}
+ * (to index the principals) and define the {@link UndertowSessionLogoutHandler} in the configuration
+ * (to index the identity provider sessions recorded by the SAML and OIDC clients):</p>
+ *
+ * <pre>
+ * final UndertowSessionIndex index = UndertowSessionIndex.register(sessionManager, "sid");
+ * final UndertowSessionStoreFactory sessionStoreFactory = new UndertowSessionStoreFactory();
+ * sessionStoreFactory.setSessionIndex(index);
+ * config.setSessionStoreFactory(sessionStoreFactory);
+ * config.setSessionLogoutHandler(new UndertowSessionLogoutHandler(index));
+ * </pre>
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class UndertowSessionIndex implements SessionListener {
+
+    private static final String PRINCIPAL_PREFIX = "principal:";
+
+    private static final String IDP_SESSION_PREFIX = "idp:";
+
+    private final Map<String, Set<String>> sessionIdsByKey = new ConcurrentHashMap<>();
+
+    private final Map<String, SessionKeys> keysBySessionId = new ConcurrentHashMap<>();
+
+    private final SessionManager sessionManager;
+
+    private final List<String> indexedAttributes;
+
+    protected UndertowSessionIndex(final SessionManager sessionManager, final List<String> indexedAttributes) {
+        this.sessionManager = sessionManager;
+        this.indexedAttributes = List.copyOf(indexedAttributes);
+    }
+
+    /**
+     * Create an index and register it as a listener of the session manager.
+     *
+     * @param sessionManager the Undertow session manager
+     * @param indexedAttributes the profile attributes or authentication attributes holding an identity provider session identifier
+     *                          (like the SAML session index or the OIDC session identifier)
+     * @return the session index
+     */
+    public static UndertowSessionIndex register(final SessionManager sessionManager, final String... indexedAttributes) {
+        final UndertowSessionIndex index = new UndertowSessionIndex(sessionManager, List.of(indexedAttributes));
+        sessionManager.registerSessionListener(index);
+        return index;
+    }
+
+    /**
+     * Index a session by the profiles it holds, replacing the keys previously computed from profiles for this session.
+     *
+     * @param sessionId the Undertow session identifier
+     * @param profiles the profiles saved in the session
+     */
+    public void index(final String sessionId, final Object profiles) {
+        final Set<String> profileKeys = new HashSet<>();
+        if (profiles instanceof Map<?, ?> map) {
+            for (final Object value : map.values()) {
+                if (value instanceof UserProfile profile) {
+                    if (profile.getId() != null) {
+                        profileKeys.add(PRINCIPAL_PREFIX + profile.getId());
+                    }
+                    for (final String attribute : indexedAttributes) {
+                        addIdpSessionKey(profileKeys, profile.getAttribute(attribute));
+                        if (profile instanceof BasicUserProfile basicProfile) {
+                            addIdpSessionKey(profileKeys, basicProfile.getAuthenticationAttribute(attribute));
+                        }
+                    }
+                }
+            }
+        }
+        update(sessionId, keys -> new SessionKeys(Set.copyOf(profileKeys), keys.recordedKeys()));
+    }
+
+    /**
+     * Index a session by an identity provider session identifier.
+     *
+     * @param sessionId the Undertow session identifier
+     * @param idpSessionId the identity provider session identifier
+     */
+    public void recordIdpSession(final String sessionId, final String idpSessionId) {
+        update(sessionId, keys -> {
+            final Set<String> recordedKeys = new HashSet<>(keys.recordedKeys());
+            recordedKeys.add(IDP_SESSION_PREFIX + idpSessionId);
+            return new SessionKeys(keys.profileKeys(), Set.copyOf(recordedKeys));
+        });
+    }
+
+    private static void addIdpSessionKey(final Set<String> keys, final Object value) {
+        if (value != null) {
+            keys.add(IDP_SESSION_PREFIX + value);
+        }
+    }
+
+    private void update(final String sessionId, final UnaryOperator<SessionKeys> updater) {
+        keysBySessionId.compute(sessionId, (id, oldKeys) -> {
+            final SessionKeys keys = oldKeys != null ? oldKeys : SessionKeys.EMPTY;
+            final SessionKeys newKeys = updater.apply(keys);
+            for (final String key : keys.all()) {
+                if (!newKeys.contains(key)) {
+                    unlink(key, id);
+                }
+            }
+            for (final String key : newKeys.all()) {
+                link(key, id);
+            }
+            return newKeys.isEmpty() ? null : newKeys;
+        });
+        // the session may have been destroyed while it was indexed: its destruction is notified after its removal
+        // from the session manager, so checking it after the update guarantees no entry is left for a dead session
+        if (sessionManager.getSession(sessionId) == null) {
+            remove(sessionId);
+        }
+    }
+
+    private void link(final String key, final String sessionId) {
+        sessionIdsByKey.compute(key, (k, ids) -> {
+            final Set<String> sessionIds = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            sessionIds.add(sessionId);
+            return sessionIds;
+        });
+    }
+
+    private void unlink(final String key, final String sessionId) {
+        sessionIdsByKey.computeIfPresent(key, (k, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Get the identifiers of the sessions of a principal.
+     *
+     * @param principalId the principal identifier
+     * @return the Undertow session identifiers
+     */
+    public Set<String> getSessionIdsByPrincipal(final String principalId) {
+        return getSessionIds(PRINCIPAL_PREFIX + principalId);
+    }
+
+    /**
+     * Get the identifiers of the sessions bound to an identity provider session.
+     *
+     * @param idpSessionId the identity provider session identifier
+     * @return the Undertow session identifiers
+     */
+    public Set<String> getSessionIdsByIdpSession(final String idpSessionId) {
+        return getSessionIds(IDP_SESSION_PREFIX + idpSessionId);
+    }
+
+    private Set<String> getSessionIds(final String key) {
+        final Set<String> sessionIds = sessionIdsByKey.get(key);
+        if (sessionIds == null) {
+            return Collections.emptySet();
+        }
+        return Set.copyOf(sessionIds);
+    }
+
+    /**
+     * Invalidate all the sessions of a principal.
+     *
+     * @param principalId the principal identifier
+     * @return the number of invalidated sessions
+     */
+    public int invalidateByPrincipal(final String principalId) {
+        return invalidate(PRINCIPAL_PREFIX + principalId);
+    }
+
+    /**
+     * Invalidate all the sessions bound to an identity provider session.
+     *
+     * @param idpSessionId the identity provider session identifier
+     * @return the number of invalidated sessions
+     */
+    public int invalidateByIdpSession(final String idpSessionId) {
+        return invalidate(IDP_SESSION_PREFIX + idpSessionId);
+    }
+
+    private int invalidate(final String key) {
+        int count = 0;
+        for (final String sessionId : getSessionIds(key)) {
+            if (invalidateSession(sessionId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Invalidate a session and remove it from the index.
+     *
+     * @param sessionId the Undertow session identifier
+     * @return whether the session was alive and has been invalidated
+     */
+    public boolean invalidateSession(final String sessionId) {
+        boolean invalidated = false;
+        final Session session = sessionManager.getSession(sessionId);
+        if (session != null) {
+            try {
+                session.invalidate(null);
+                invalidated = true;
+            } catch (final IllegalStateException ignored) {
+                // already invalidated concurrently
+            }
+        }
+        remove(sessionId);
+        return invalidated;
+    }
+
+    /**
+     * Get the identity provider session identifiers explicitly recorded for a session.
+     *
+     * @param sessionId the Undertow session identifier
+     * @return the identity provider session identifiers
+     */
+    public Set<String> getRecordedIdpSessions(final String sessionId) {
+        final SessionKeys keys = keysBySessionId.get(sessionId);
+        if (keys == null) {
+            return Collections.emptySet();
+        }
+        final Set<String> idpSessionIds = new HashSet<>();
+        for (final String key : keys.recordedKeys()) {
+            idpSessionIds.add(key.substring(IDP_SESSION_PREFIX.length()));
+        }
+        return idpSessionIds;
+    }
+
+    /**
+     * Move the keys of a session to its new identifier.
+     *
+     * @param oldSessionId the old Undertow session identifier
+     * @param newSessionId the new Undertow session identifier
+     */
+    public void moveSession(final String oldSessionId, final String newSessionId) {
+        final SessionKeys[] moved = new SessionKeys[1];
+        keysBySessionId.computeIfPresent(oldSessionId, (id, keys) -> {
+            for (final String key : keys.all()) {
+                unlink(key, id);
+            }
+            moved[0] = keys;
+            return null;
+        });
+        if (moved[0] != null) {
+            update(newSessionId, keys -> keys.merge(moved[0]));
+        }
+    }
+
+    /**
+     * Remove a session from the index.
+     *
+     * @param sessionId the Undertow session identifier
+     */
+    public void remove(final String sessionId) {
+        keysBySessionId.computeIfPresent(sessionId, (id, keys) -> {
+            for (final String key : keys.all()) {
+                unlink(key, id);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void sessionDestroyed(final Session session, final HttpServerExchange exchange, final SessionDestroyedReason reason) {
+        remove(session.getId());
+    }
+
+    @Override
+    public void sessionIdChanged(final Session session, final String oldSessionId) {
+        moveSession(oldSessionId, session.getId());
+    }
+
+    public SessionManager getSessionManager() {
+        return sessionManager;
+    }
+
+    public List<String> getIndexedAttributes() {
+        return indexedAttributes;
+    }
+
+    /**
+     * The keys of a session: the ones computed from its profiles and the ones explicitly recorded.
+     */
+    private record SessionKeys(Set<String> profileKeys, Set<String> recordedKeys) {
+
+        private static final SessionKeys EMPTY = new SessionKeys(Set.of(), Set.of());
+
+        Set<String> all() {
+            if (recordedKeys.isEmpty()) {
+                return profileKeys;
+            }
+            final Set<String> all = new HashSet<>(profileKeys);
+            all.addAll(recordedKeys);
+            return all;
+        }
+
+        boolean contains(final String key) {
+            return profileKeys.contains(key) || recordedKeys.contains(key);
+        }
+
+        boolean isEmpty() {
+            return profileKeys.isEmpty() && recordedKeys.isEmpty();
+        }
+
+        SessionKeys merge(final SessionKeys other) {
+            final Set<String> newProfileKeys = new HashSet<>(profileKeys);
+            newProfileKeys.addAll(other.profileKeys);
+            final Set<String> newRecordedKeys = new HashSet<>(recordedKeys);
+            newRecordedKeys.addAll(other.recordedKeys);
+            return new SessionKeys(Set.copyOf(newProfileKeys), Set.copyOf(newRecordedKeys));
+        }
+    }
+}
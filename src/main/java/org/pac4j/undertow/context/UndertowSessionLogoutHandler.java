@@ -0,0 +1,63 @@
+package org.pac4j.undertow.context;
+
+import org.pac4j.core.context.CallContext;
+import org.pac4j.core.logout.handler.SessionLogoutHandler;
+import org.pac4j.core.util.CommonHelper;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@link SessionLogoutHandler} relying on the {@link UndertowSessionIndex}: the identity provider sessions recorded
+ * by the clients are indexed along the principals and the logout requests invalidate the Undertow sessions directly.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class UndertowSessionLogoutHandler implements SessionLogoutHandler {
+
+    private final UndertowSessionIndex sessionIndex;
+
+    public UndertowSessionLogoutHandler(final UndertowSessionIndex sessionIndex) {
+        CommonHelper.assertNotNull("sessionIndex", sessionIndex);
+        this.sessionIndex = sessionIndex;
+    }
+
+    @Override
+    public void recordSession(final CallContext ctx, final String key) {
+        ctx.sessionStore().getSessionId(ctx.webContext(), true)
+            .ifPresent(sessionId -> sessionIndex.recordIdpSession(sessionId, key));
+    }
+
+    @Override
+    public void destroySession(final CallContext ctx, final String key) {
+        final Optional<String> currentSessionId = ctx.sessionStore().getSessionId(ctx.webContext(), false);
+        for (final String sessionId : sessionIndex.getSessionIdsByIdpSession(key)) {
+            if (currentSessionId.isPresent() && currentSessionId.get().equals(sessionId)) {
+                // front-channel logout: destroy the session through the store to keep it consistent for this exchange
+                ctx.sessionStore().destroySession(ctx.webContext());
+                sessionIndex.remove(sessionId);
+            } else {
+                sessionIndex.invalidateSession(sessionId);
+            }
+        }
+    }
+
+    @Override
+    public void renewSession(final CallContext ctx, final String oldSessionId) {
+        ctx.sessionStore().getSessionId(ctx.webContext(), true)
+            .filter(newSessionId -> !newSessionId.equals(oldSessionId))
+            .ifPresent(newSessionId -> sessionIndex.moveSession(oldSessionId, newSessionId));
+    }
+
+    @Override
+    public Optional<String> cleanRecord(final String sessionId) {
+        final Set<String> idpSessionIds = sessionIndex.getRecordedIdpSessions(sessionId);
+        sessionIndex.remove(sessionId);
+        return idpSessionIds.stream().findFirst();
+    }
+
+    public UndertowSessionIndex getSessionIndex() {
+        return sessionIndex;
+    }
+}
@@ -1,11 +1,19 @@
 package org.pac4j.undertow.context;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.session.*;
+import io.undertow.util.AttachmentKey;
 import org.pac4j.core.context.WebContext;
 import org.pac4j.core.context.session.PrefixedSessionStore;
 import org.pac4j.core.context.session.SessionStore;
+import org.pac4j.core.profile.UserProfile;
+import org.pac4j.core.util.Pac4jConstants;
+import org.pac4j.undertow.profile.EncodedProfiles;
+import org.pac4j.undertow.profile.ProfileCodec;
+import org.pac4j.undertow.trace.SecurityTrace;
 
 /**
  * Specific session store for Undertow relying on the {@link SessionManager} and {@link SessionConfig}.
@@ -15,13 +23,23 @@ import org.pac4j.core.context.session.SessionStore;
  */
 public class UndertowSessionStore extends PrefixedSessionStore {
 
+    /** Attachment key of the session store shared by all the pac4j calls of an exchange */
+    public static final AttachmentKey<UndertowSessionStore> ATTACHMENT_KEY = AttachmentKey.create(UndertowSessionStore.class);
+
     private final HttpServerExchange exchange;
     private final SessionManager sessionManager;
     private final SessionConfig sessionConfig;
     private Session session;
+    private Session exchangeSession;
 
     private String sessionCookieName = "JSESSIONID";
 
+    private UndertowSessionIndex sessionIndex;
+
+    private ProfileCodec profileCodec;
+
+    private StatelessCsrfTokens csrfTokens;
+
     public UndertowSessionStore(final HttpServerExchange exchange) {
         this.exchange = exchange;
         this.sessionManager = exchange.getAttachment(SessionManager.ATTACHMENT_KEY);
@@ -38,15 +56,15 @@ public class UndertowSessionStore extends PrefixedSessionStore {
         if (session != null) {
             return Optional.of(session);
         }
-        final Session session = sessionManager.getSession(context.getExchange(), sessionConfig);
-        if (session != null) {
-            return Optional.of(session);
-        }
-        if (createSession) {
-            return Optional.of(sessionManager.createSession(context.getExchange(), sessionConfig));
-        } else {
-            return Optional.empty();
+        if (exchangeSession == null) {
+            final long start = SecurityTrace.start(context.getExchange());
+            exchangeSession = sessionManager.getSession(context.getExchange(), sessionConfig);
+            if (exchangeSession == null && createSession) {
+                exchangeSession = sessionManager.createSession(context.getExchange(), sessionConfig);
+            }
+            SecurityTrace.end(context.getExchange(), SecurityTrace.Phase.SESSION_LOOKUP, start);
         }
+        return Optional.ofNullable(exchangeSession);
     }
 
     @Override
@@ -59,13 +77,65 @@ public class UndertowSessionStore extends PrefixedSessionStore {
     @Override
     public Optional<Object> get(final WebContext context, final String key) {
         final var session = getSession(context, false);
-        return session.map(value -> value.getAttribute(key));
+        if (csrfTokens != null && csrfTokens.handles(key)) {
+            return session.map(value -> csrfTokens.get(key, value));
+        }
+        return session.map(value -> readAttribute(value, key));
     }
 
     @Override
     public void set(final WebContext context, final String key, final Object value) {
         final var session = getSession(context, true);
-        session.get().setAttribute(key, value);
+        if (csrfTokens != null && csrfTokens.handles(key)) {
+            csrfTokens.set(key, value, session.get());
+            return;
+        }
+        session.get().setAttribute(key, writeValue(key, value));
+        if (sessionIndex != null && Pac4jConstants.USER_PROFILES.equals(key)) {
+            sessionIndex.index(session.get().getId(), value);
+        }
+    }
+
+    private Object readAttribute(final Session session, final String key) {
+        final Object value = session.getAttribute(key);
+        if (profileCodec != null && value instanceof EncodedProfiles encodedProfiles) {
+            return encodedProfiles.getProfiles(profileCodec);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object writeValue(final String key, final Object value) {
+        if (profileCodec != null && value instanceof Map && Pac4jConstants.USER_PROFILES.equals(key)) {
+            return EncodedProfiles.encode(profileCodec, (Map<String, UserProfile>) value);
+        }
+        return value;
+    }
+
+    /**
+     * Get the encoded user profiles saved in the session, without decoding them.
+     *
+     * @param context the web context
+     * @return the encoded profiles if a profile codec is defined and the user is authenticated
+     */
+    public Optional<EncodedProfiles> getEncodedProfiles(final WebContext context) {
+        if (profileCodec == null) {
+            return Optional.empty();
+        }
+        return getSession(context, false)
+                .map(value -> value.getAttribute(Pac4jConstants.USER_PROFILES))
+                .filter(EncodedProfiles.class::isInstance)
+                .map(EncodedProfiles.class::cast);
+    }
+
+    /**
+     * Get the current CSRF token computed by the {@link StatelessCsrfTokens}, creating the session if necessary.
+     *
+     * @param context the web context
+     * @return the CSRF token
+     */
+    public String getCsrfToken(final WebContext context) {
+        return csrfTokens.currentToken(getSession(context, true).get());
     }
 
     public SessionManager getSessionManager() {
@@ -80,6 +150,7 @@ public class UndertowSessionStore extends PrefixedSessionStore {
     public boolean destroySession(final WebContext context) {
         final Optional<Session> session = getSession(context, false);
         session.ifPresent(value -> value.invalidate(((UndertowWebContext) context).getExchange()));
+        exchangeSession = null;
         return true;
     }
 
@@ -94,6 +165,9 @@ public class UndertowSessionStore extends PrefixedSessionStore {
             var undertowSession = (Session) trackableSession;
             var sessionStore = new UndertowSessionStore(exchange, undertowSession);
             sessionStore.setPrefix(this.getPrefix());
+            sessionStore.setSessionIndex(this.sessionIndex);
+            sessionStore.setProfileCodec(this.profileCodec);
+            sessionStore.setCsrfTokens(this.csrfTokens);
             return Optional.of(sessionStore);
         } else {
             return Optional.empty();
@@ -110,14 +184,22 @@ public class UndertowSessionStore extends PrefixedSessionStore {
         for (int i = 0; i < attributeNames.length; i++) {
             attributeValues[i] = session.getAttribute(attributeNames[i]);
         }
+        final Set<String> idpSessionIds = sessionIndex != null ? sessionIndex.getRecordedIdpSessions(session.getId()) : Set.of();
 
         context.getExchange().getRequestCookies().remove(sessionCookieName);
         session.invalidate(exchange);
 
         final Session newSession = sessionManager.createSession(exchange, sessionConfig);
+        exchangeSession = newSession;
         for (int i = 0; i < attributeNames.length; i++) {
             newSession.setAttribute(attributeNames[i], attributeValues[i]);
         }
+        if (sessionIndex != null) {
+            sessionIndex.index(newSession.getId(), readAttribute(newSession, Pac4jConstants.USER_PROFILES));
+            for (final String idpSessionId : idpSessionIds) {
+                sessionIndex.recordIdpSession(newSession.getId(), idpSessionId);
+            }
+        }
         return true;
     }
 
@@ -128,4 +210,28 @@ public class UndertowSessionStore extends PrefixedSessionStore {
     public void setSessionCookieName(final String sessionCookieName) {
         this.sessionCookieName = sessionCookieName;
     }
+
+    public UndertowSessionIndex getSessionIndex() {
+        return sessionIndex;
+    }
+
+    public void setSessionIndex(final UndertowSessionIndex sessionIndex) {
+        this.sessionIndex = sessionIndex;
+    }
+
+    public ProfileCodec getProfileCodec() {
+        return profileCodec;
+    }
+
+    public void setProfileCodec(final ProfileCodec profileCodec) {
+        this.profileCodec = profileCodec;
+    }
+
+    public StatelessCsrfTokens getCsrfTokens() {
+        return csrfTokens;
+    }
+
+    public void setCsrfTokens(final StatelessCsrfTokens csrfTokens) {
+        this.csrfTokens = csrfTokens;
+    }
 }
@@ -1,12 +1,14 @@
 package org.pac4j.undertow.context;
 
+import io.undertow.server.HttpServerExchange;
 import org.pac4j.core.context.FrameworkParameters;
 import org.pac4j.core.context.session.SessionStore;
 import org.pac4j.core.context.session.SessionStoreFactory;
 import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.undertow.profile.ProfileCodec;
 
 /**
- * Build an Undertow session store from parameters.
+ * Build an Undertow session store from parameters: the session store is created once per exchange and saved as an attachment.
  *
  * @author Sakib Hadziavdic
  * @since 6.0.0
@@ -15,17 +17,56 @@ public class UndertowSessionStoreFactory implements SessionStoreFactory {
 
     /** Constant <code>INSTANCE</code> */
     public static final SessionStoreFactory INSTANCE = new UndertowSessionStoreFactory();
-    
+
+    private UndertowSessionIndex sessionIndex;
+
+    private ProfileCodec profileCodec;
+
+    private StatelessCsrfTokens csrfTokens;
+
     /**
      * {@inheritDoc}
      *
-     * Create the session store.
+     * Create the session store or get the one already attached to the exchange.
      */
     @Override
     public SessionStore newSessionStore(final FrameworkParameters parameters) {
         if (parameters instanceof UndertowParameters undertowParameters) {
-            return new UndertowSessionStore(undertowParameters.exchange());
+            final HttpServerExchange exchange = undertowParameters.exchange();
+            UndertowSessionStore sessionStore = exchange.getAttachment(UndertowSessionStore.ATTACHMENT_KEY);
+            if (sessionStore == null) {
+                sessionStore = new UndertowSessionStore(exchange);
+                sessionStore.setSessionIndex(sessionIndex);
+                sessionStore.setProfileCodec(profileCodec);
+                sessionStore.setCsrfTokens(csrfTokens);
+                exchange.putAttachment(UndertowSessionStore.ATTACHMENT_KEY, sessionStore);
+            }
+            return sessionStore;
         }
         throw new TechnicalException("Bad parameters type");
     }
-}
\ No newline at end of file
+
+    public UndertowSessionIndex getSessionIndex() {
+        return sessionIndex;
+    }
+
+    public void setSessionIndex(final UndertowSessionIndex sessionIndex) {
+        this.sessionIndex = sessionIndex;
+    }
+
+    public ProfileCodec getProfileCodec() {
+        return profileCodec;
+    }
+
+    public void setProfileCodec(final ProfileCodec profileCodec) {
+        this.profileCodec = profileCodec;
+    }
+
+    public StatelessCsrfTokens getCsrfTokens() {
+        return csrfTokens;
+    }
+
+    public void setCsrfTokens(final StatelessCsrfTokens csrfTokens) {
+        this.csrfTokens = csrfTokens;
+    }
+}
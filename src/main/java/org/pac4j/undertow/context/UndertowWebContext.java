@@ -5,6 +5,7 @@ import io.undertow.server.handlers.CookieImpl;
 import io.undertow.server.handlers.form.FormData;
 import io.undertow.server.handlers.form.FormDataParser;
 import io.undertow.util.Headers;
+import io.undertow.util.AttachmentKey;
 import io.undertow.util.HttpString;
 
 import java.util.*;
@@ -24,6 +25,9 @@ import org.pac4j.core.util.CommonHelper;
  */
 public class UndertowWebContext implements WebContext {
 
+    /** Attachment key of the web context shared by all the pac4j calls of an exchange */
+    public static final AttachmentKey<UndertowWebContext> ATTACHMENT_KEY = AttachmentKey.create(UndertowWebContext.class);
+
     private final HttpServerExchange exchange;
 
     public UndertowWebContext(final HttpServerExchange exchange) {
@@ -119,10 +123,14 @@ public class UndertowWebContext implements WebContext {
         newCookie.setComment(cookie.getComment());
         newCookie.setDomain(cookie.getDomain());
         newCookie.setPath(cookie.getPath());
-        newCookie.setMaxAge(cookie.getMaxAge() < 0 ? null : cookie.getMaxAge());
+        if (cookie.getMaxAge() >= 0) {
+            newCookie.setMaxAge(cookie.getMaxAge());
+        }
         newCookie.setSecure(cookie.isSecure());
         newCookie.setHttpOnly(cookie.isHttpOnly());
-        newCookie.setSameSiteMode(cookie.getSameSitePolicy());
+        if (cookie.getSameSitePolicy() != null) {
+            newCookie.setSameSiteMode(cookie.getSameSitePolicy());
+        }
         getExchange().setResponseCookie(newCookie);
     }
 
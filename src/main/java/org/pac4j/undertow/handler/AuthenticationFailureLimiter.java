@@ -0,0 +1,281 @@
+package org.pac4j.undertow.handler;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.pac4j.core.util.CommonHelper;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Limiter of the failed authentications per source address (and optionally per credential identifier).
+ *
+ * The failures are counted in a fixed-size count-min sketch whose counters are halved at each decay period,
+ * so the memory used does not depend on the number of attackers. The decay is applied lazily, per stripe of counters,
+ * when a stripe is accessed: no request pays for the whole sketch.
+ *
+ * The sketch positions are derived with SipHash-2-4 and a random key per limiter, over the raw address bytes and
+ * the UTF-8 bytes of the credential identifier in separate domains: a client cannot choose an identifier or an address
+ * colliding with the counters of another client. The IPv6 clients are counted per /64 network, as a single client
+ * usually owns a whole /64.
+ *
+ * Only the rejected requests which presented credentials are failures: a 401 response to a request without credentials
+ * is the normal challenge and a 403 response is an authorization failure.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class AuthenticationFailureLimiter {
+
+    private static final int DEPTH = 4;
+
+    private static final byte ADDRESS_DOMAIN = 0;
+
+    private static final byte CREDENTIAL_DOMAIN = 1;
+
+    private static final int IPV6_NETWORK_BYTES = 8;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final int MAX_WIDTH = 1 << 24;
+
+    private static final int STRIPE_SHIFT = 6;
+
+    private final AtomicIntegerArray counters;
+
+    private final AtomicLongArray stripeEpochs;
+
+    private final int mask;
+
+    private final int maxFailures;
+
+    private final long decayPeriodNanos;
+
+    private final long origin;
+
+    private final long key0;
+
+    private final long key1;
+
+    private Function<HttpServerExchange, String> credentialIdentifier;
+
+    private Predicate<HttpServerExchange> credentialsPresent = this::hasDefaultCredentials;
+
+    /**
+     * Build the limiter.
+     *
+     * @param width the number of counters per row of the sketch (rounded up to a power of two)
+     * @param maxFailures the number of failures after which the requests are rejected
+     * @param decayPeriod the period after which the failure counts are halved
+     */
+    public AuthenticationFailureLimiter(final int width, final int maxFailures, final Duration decayPeriod) {
+        CommonHelper.assertTrue(width > 0 && width <= MAX_WIDTH, "width must be between 1 and " + MAX_WIDTH);
+        CommonHelper.assertTrue(maxFailures > 0, "maxFailures must be positive");
+        CommonHelper.assertNotNull("decayPeriod", decayPeriod);
+        CommonHelper.assertTrue(!decayPeriod.isNegative() && !decayPeriod.isZero(), "decayPeriod must be positive");
+        final int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.counters = new AtomicIntegerArray(DEPTH * size);
+        this.stripeEpochs = new AtomicLongArray(((DEPTH * size - 1) >>> STRIPE_SHIFT) + 1);
+        this.mask = size - 1;
+        this.maxFailures = maxFailures;
+        this.decayPeriodNanos = decayPeriod.toNanos();
+        this.origin = System.nanoTime();
+        this.key0 = RANDOM.nextLong();
+        this.key1 = RANDOM.nextLong();
+    }
+
+    /**
+     * Whether the request must be rejected because of too many failed authentications.
+     *
+     * @param exchange the Undertow exchange
+     * @return whether the request is limited
+     */
+    public boolean isLimited(final HttpServerExchange exchange) {
+        if (estimate(addressHash(exchange)) >= maxFailures) {
+            return true;
+        }
+        final String identifier = credentialIdentifier != null ? credentialIdentifier.apply(exchange) : null;
+        return identifier != null && estimate(credentialHash(identifier)) >= maxFailures;
+    }
+
+    /**
+     * Whether the request presented credentials, so that its rejection is a failed authentication.
+     *
+     * @param exchange the Undertow exchange
+     * @return whether credentials were presented
+     */
+    public boolean hasCredentials(final HttpServerExchange exchange) {
+        return credentialsPresent.test(exchange);
+    }
+
+    private boolean hasDefaultCredentials(final HttpServerExchange exchange) {
+        return exchange.getRequestHeaders().contains(Headers.AUTHORIZATION)
+                || credentialIdentifier != null && credentialIdentifier.apply(exchange) != null;
+    }
+
+    /**
+     * Record a failed authentication.
+     *
+     * @param exchange the Undertow exchange
+     */
+    public void recordFailure(final HttpServerExchange exchange) {
+        increment(addressHash(exchange));
+        final String identifier = credentialIdentifier != null ? credentialIdentifier.apply(exchange) : null;
+        if (identifier != null) {
+            increment(credentialHash(identifier));
+        }
+    }
+
+    private long addressHash(final HttpServerExchange exchange) {
+        final InetSocketAddress sourceAddress = exchange.getSourceAddress();
+        if (sourceAddress == null || sourceAddress.getAddress() == null) {
+            return sipHash(ADDRESS_DOMAIN, new byte[0], 0);
+        }
+        final InetAddress address = sourceAddress.getAddress();
+        final byte[] bytes = address.getAddress();
+        return sipHash(ADDRESS_DOMAIN, bytes, address instanceof Inet6Address ? IPV6_NETWORK_BYTES : bytes.length);
+    }
+
+    private long credentialHash(final String identifier) {
+        final byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+        return sipHash(CREDENTIAL_DOMAIN, bytes, bytes.length);
+    }
+
+    /**
+     * SipHash-2-4 of the domain byte followed by the first bytes of the data, with the key of this limiter.
+     */
+    private long sipHash(final byte domain, final byte[] data, final int length) {
+        final long[] v = {
+            0x736f6d6570736575L ^ key0,
+            0x646f72616e646f6dL ^ key1,
+            0x6c7967656e657261L ^ key0,
+            0x7465646279746573L ^ key1
+        };
+        final int total = length + 1;
+        long word = 0;
+        for (int i = 0; i < total; i++) {
+            final long b = (i == 0 ? domain : data[i - 1]) & 0xFFL;
+            word |= b << ((i & 7) << 3);
+            if ((i & 7) == 7) {
+                compress(v, word);
+                word = 0;
+            }
+        }
+        compress(v, word | ((long) total & 0xFFL) << 56);
+        v[2] ^= 0xFF;
+        sipRounds(v, 4);
+        return v[0] ^ v[1] ^ v[2] ^ v[3];
+    }
+
+    private static void compress(final long[] v, final long word) {
+        v[3] ^= word;
+        sipRounds(v, 2);
+        v[0] ^= word;
+    }
+
+    private static void sipRounds(final long[] v, final int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            v[0] += v[1];
+            v[1] = Long.rotateLeft(v[1], 13) ^ v[0];
+            v[0] = Long.rotateLeft(v[0], 32);
+            v[2] += v[3];
+            v[3] = Long.rotateLeft(v[3], 16) ^ v[2];
+            v[0] += v[3];
+            v[3] = Long.rotateLeft(v[3], 21) ^ v[0];
+            v[2] += v[1];
+            v[1] = Long.rotateLeft(v[1], 17) ^ v[2];
+            v[2] = Long.rotateLeft(v[2], 32);
+        }
+    }
+
+    /**
+     * Position of a key in a row, derived from the two halves of its hash (double hashing).
+     */
+    private int index(final int row, final long hash) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    private int estimate(final long hash) {
+        final long epoch = currentEpoch();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            final int i = index(row, hash);
+            decayIfNeeded(i, epoch);
+            min = Math.min(min, counters.get(i));
+        }
+        return min;
+    }
+
+    private void increment(final long hash) {
+        final long epoch = currentEpoch();
+        for (int row = 0; row < DEPTH; row++) {
+            final int i = index(row, hash);
+            decayIfNeeded(i, epoch);
+            if (counters.get(i) < Integer.MAX_VALUE) {
+                counters.incrementAndGet(i);
+            }
+        }
+    }
+
+    private long currentEpoch() {
+        return (System.nanoTime() - origin) / decayPeriodNanos;
+    }
+
+    /**
+     * Halve the counters of the stripe of a counter once per decay period elapsed since the stripe was last decayed.
+     */
+    private void decayIfNeeded(final int counter, final long epoch) {
+        final int stripe = counter >>> STRIPE_SHIFT;
+        final long stripeEpoch = stripeEpochs.get(stripe);
+        if (stripeEpoch < epoch && stripeEpochs.compareAndSet(stripe, stripeEpoch, epoch)) {
+            final int shift = (int) Math.min(epoch - stripeEpoch, Integer.SIZE - 1);
+            final int end = Math.min((stripe + 1) << STRIPE_SHIFT, counters.length());
+            for (int i = stripe << STRIPE_SHIFT; i < end; i++) {
+                counters.updateAndGet(i, c -> c >>> shift);
+            }
+        }
+    }
+
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    public Function<HttpServerExchange, String> getCredentialIdentifier() {
+        return credentialIdentifier;
+    }
+
+    /**
+     * Define how to get the credential identifier (like the username parameter) from the exchange.
+     * It runs on the I/O thread, before the request body is read.
+     *
+     * @param credentialIdentifier the function returning the credential identifier or <code>null</code>
+     */
+    public void setCredentialIdentifier(final Function<HttpServerExchange, String> credentialIdentifier) {
+        this.credentialIdentifier = credentialIdentifier;
+    }
+
+    public Predicate<HttpServerExchange> getCredentialsPresent() {
+        return credentialsPresent;
+    }
+
+    /**
+     * Define how to know whether the request presented credentials (by default: an <code>Authorization</code> header
+     * or a credential identifier).
+     *
+     * @param credentialsPresent the predicate
+     */
+    public void setCredentialsPresent(final Predicate<HttpServerExchange> credentialsPresent) {
+        CommonHelper.assertNotNull("credentialsPresent", credentialsPresent);
+        this.credentialsPresent = credentialsPresent;
+    }
+}
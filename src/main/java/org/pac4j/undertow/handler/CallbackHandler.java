@@ -10,10 +10,21 @@ import org.pac4j.core.adapter.FrameworkAdapter;
 import org.pac4j.core.config.Config;
 import org.pac4j.core.engine.CallbackLogic;
 import org.pac4j.undertow.context.UndertowParameters;
+import org.pac4j.undertow.trace.SecurityTrace;
+import org.pac4j.undertow.util.ConfigInitializer;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>This filter finishes the login process for an indirect client.</p>
  *
+ * <p>The form parameters are parsed and the callback logic runs in blocking mode on a worker thread.</p>
+ *
+ * <p>The default settings of the configuration are applied when the handler is built. The callback logic and, if no default
+ * client is defined, the first client of the configuration are read on each request, so a later
+ * {@link Config#setCallbackLogic(CallbackLogic)} or {@link Config#addClient} is taken into account; a new configuration must be
+ * installed with {@link #reload(Config)}. The handler returned by the <code>build</code> methods is a {@link CallbackHandler}.</p>
+ *
  * @author Jerome Leleu
  * @author Michaël Remond
  * @since 1.0.0
@@ -22,17 +33,16 @@ public class CallbackHandler implements HttpHandler {
 
     private CallbackLogic callbackLogic;
 
-    private Config config;
+    private final HttpHandler entryHandler;
 
-    private String defaultUrl;
-
-    private Boolean renewSession;
-
-    private String defaultClient;
+    private final AtomicReference<Settings> settings;
 
     protected CallbackHandler(final Config config, final String defaultUrl)  {
-        this.config = config;
-        this.defaultUrl = defaultUrl;
+        this.settings = new AtomicReference<>(Settings.of(config, null, defaultUrl, null, null));
+        final FormParserFactory factory = FormParserFactory.builder().addParser(new FormEncodedDataDefinition()).build();
+        final EagerFormParsingHandler formHandler = new EagerFormParsingHandler(factory);
+        formHandler.setNext(this::callback);
+        this.entryHandler = new BlockingHandler(formHandler);
     }
 
     public static HttpHandler build(final Config config) {
@@ -44,26 +54,44 @@ public class CallbackHandler implements HttpHandler {
     }
 
     public static HttpHandler build(final Config config, final String defaultUrl, final CallbackLogic callbackLogic) {
-        final FormParserFactory factory = FormParserFactory.builder().addParser(new FormEncodedDataDefinition()).build();
-        final EagerFormParsingHandler formHandler = new EagerFormParsingHandler(factory);
         final CallbackHandler callbackHandler = new CallbackHandler(config, defaultUrl);
         if (callbackLogic != null) {
             callbackHandler.setCallbackLogic(callbackLogic);
         }
-        formHandler.setNext(callbackHandler);
-        return new BlockingHandler(formHandler);
+        return callbackHandler;
     }
 
     @Override
-    public void handleRequest(final HttpServerExchange exchange) {
-        FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
-        config.getCallbackLogic().perform(
-                this.config,
-                this.defaultUrl,
-                this.renewSession,
-                config.getClients().getClients().get(0).getName(),
+    public void handleRequest(final HttpServerExchange exchange) throws Exception {
+        entryHandler.handleRequest(exchange);
+    }
+
+    private void callback(final HttpServerExchange exchange) {
+        final Settings settings = this.settings.get();
+        final long start = SecurityTrace.start(exchange);
+        settings.resolveCallbackLogic().perform(
+                settings.config(),
+                settings.defaultUrl(),
+                settings.renewSession(),
+                settings.resolveDefaultClient(),
                 new UndertowParameters(exchange)
         );
+        SecurityTrace.end(exchange, SecurityTrace.Phase.CALLBACK_LOGIC, start);
+    }
+
+    /**
+     * Replace the configuration. The new configuration is initialized before being used,
+     * the in-flight requests keep using the previous one.
+     *
+     * @param config the new configuration
+     */
+    public void reload(final Config config) {
+        ConfigInitializer.initialize(config);
+        settings.updateAndGet(s -> Settings.of(config, callbackLogic, s.defaultUrl(), s.renewSession(), s.defaultClient()));
+    }
+
+    public Config getConfig() {
+        return settings.get().config();
     }
 
     protected CallbackLogic getCallbackLogic() {
@@ -72,29 +100,54 @@ public class CallbackHandler implements HttpHandler {
 
     protected void setCallbackLogic(final CallbackLogic callbackLogic) {
         this.callbackLogic = callbackLogic;
+        settings.updateAndGet(s -> Settings.of(s.config(), callbackLogic, s.defaultUrl(), s.renewSession(), s.defaultClient()));
     }
 
     public String getDefaultUrl() {
-        return defaultUrl;
+        return settings.get().defaultUrl();
     }
 
     public void setDefaultUrl(final String defaultUrl) {
-        this.defaultUrl = defaultUrl;
+        settings.updateAndGet(s -> Settings.of(s.config(), callbackLogic, defaultUrl, s.renewSession(), s.defaultClient()));
     }
 
     public Boolean getRenewSession() {
-        return renewSession;
+        return settings.get().renewSession();
     }
 
     public void setRenewSession(final Boolean renewSession) {
-        this.renewSession = renewSession;
+        settings.updateAndGet(s -> Settings.of(s.config(), callbackLogic, s.defaultUrl(), renewSession, s.defaultClient()));
     }
 
     public String getDefaultClient() {
-        return defaultClient;
+        return settings.get().defaultClient();
     }
 
     public void setDefaultClient(final String defaultClient) {
-        this.defaultClient = defaultClient;
+        settings.updateAndGet(s -> Settings.of(s.config(), callbackLogic, s.defaultUrl(), s.renewSession(), defaultClient));
+    }
+
+    /**
+     * Immutable snapshot of the settings, read once per request. The default settings of the configuration are applied
+     * when the snapshot is built.
+     */
+    private record Settings(Config config, CallbackLogic callbackLogic, String defaultUrl, Boolean renewSession, String defaultClient) {
+
+        static Settings of(final Config config, final CallbackLogic callbackLogic, final String defaultUrl, final Boolean renewSession,
+                           final String defaultClient) {
+            FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
+            return new Settings(config, callbackLogic, defaultUrl, renewSession, defaultClient);
+        }
+
+        CallbackLogic resolveCallbackLogic() {
+            return callbackLogic != null ? callbackLogic : config.getCallbackLogic();
+        }
+
+        String resolveDefaultClient() {
+            if (defaultClient == null && !config.getClients().getClients().isEmpty()) {
+                return config.getClients().getClients().get(0).getName();
+            }
+            return defaultClient;
+        }
     }
 }
@@ -0,0 +1,132 @@
+package org.pac4j.undertow.handler;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.CanonicalPathUtils;
+import io.undertow.util.HttpString;
+
+import java.util.Arrays;
+
+/**
+ * Simple rules evaluated directly on the {@link HttpServerExchange} to exclude requests from the security
+ * (static assets, health checks, CORS preflight requests...) before any pac4j object is built.
+ *
+ * The rules must be defined before the handler is started. The prefixes only match full segments and the path rules only
+ * apply to canonical paths: a request whose path contains <code>.</code> or <code>..</code> segments is never excluded
+ * by its path, as the wrapped handler (a <code>PathHandler</code> for example) routes on the raw path
+ * (<code>/admin/../static/x</code> must not be excluded by the <code>/static</code> prefix and then served as <code>/admin</code>).
+ *
+ * By default, the excluded requests are forwarded to the wrapped handler in blocking mode on a worker thread, like the secured ones.
+ * If the wrapped handler is non-blocking (it never performs blocking I/O), use {@link #nonBlocking()} to forward them
+ * directly on the I/O thread.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class ExcludedRequests {
+
+    private String[] pathPrefixes = new String[0];
+
+    private HttpString[] methods = new HttpString[0];
+
+    private String[] extensions = new String[0];
+
+    private boolean nonBlocking;
+
+    /**
+     * Exclude the requests whose path is the given prefix or starts with the given prefix followed by a <code>/</code>
+     * (<code>/healthz</code> matches <code>/healthz</code> and <code>/healthz/live</code>, but not <code>/healthz-admin</code>).
+     *
+     * @param pathPrefix the path prefix
+     * @return this object
+     */
+    public ExcludedRequests pathPrefix(final String pathPrefix) {
+        String prefix = CanonicalPathUtils.canonicalize(pathPrefix.startsWith("/") ? pathPrefix : "/" + pathPrefix);
+        while (prefix.length() > 1 && prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        pathPrefixes = append(pathPrefixes, prefix);
+        return this;
+    }
+
+    /**
+     * Exclude the requests with the given HTTP method.
+     *
+     * @param method the HTTP method
+     * @return this object
+     */
+    public ExcludedRequests method(final String method) {
+        methods = append(methods, HttpString.tryFromString(method));
+        return this;
+    }
+
+    /**
+     * Exclude the requests whose path ends with the given extension (like <code>.css</code>).
+     *
+     * @param extension the extension
+     * @return this object
+     */
+    public ExcludedRequests extension(final String extension) {
+        extensions = append(extensions, extension.startsWith(".") ? extension : "." + extension);
+        return this;
+    }
+
+    /**
+     * Forward the excluded requests directly on the I/O thread: the wrapped handler must not perform blocking I/O.
+     *
+     * @return this object
+     */
+    public ExcludedRequests nonBlocking() {
+        nonBlocking = true;
+        return this;
+    }
+
+    public boolean isNonBlocking() {
+        return nonBlocking;
+    }
+
+    /**
+     * Whether the request is excluded from the security.
+     *
+     * @param exchange the Undertow exchange
+     * @return whether the request is excluded
+     */
+    public boolean matches(final HttpServerExchange exchange) {
+        final HttpString requestMethod = exchange.getRequestMethod();
+        for (final HttpString method : methods) {
+            if (method.equals(requestMethod)) {
+                return true;
+            }
+        }
+        if (pathPrefixes.length == 0 && extensions.length == 0) {
+            return false;
+        }
+        final String path = exchange.getRequestPath();
+        if (!path.equals(CanonicalPathUtils.canonicalize(path))) {
+            return false;
+        }
+        for (final String pathPrefix : pathPrefixes) {
+            if (matchesPrefix(path, pathPrefix)) {
+                return true;
+            }
+        }
+        for (final String extension : extensions) {
+            if (path.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesPrefix(final String path, final String pathPrefix) {
+        if (!path.startsWith(pathPrefix)) {
+            return false;
+        }
+        return path.length() == pathPrefix.length() || "/".equals(pathPrefix) || path.charAt(pathPrefix.length()) == '/';
+    }
+
+    private static <T> T[] append(final T[] values, final T value) {
+        final T[] newValues = Arrays.copyOf(values, values.length + 1);
+        newValues[values.length] = value;
+        return newValues;
+    }
+}
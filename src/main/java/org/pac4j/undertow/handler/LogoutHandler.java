@@ -6,10 +6,18 @@ import org.pac4j.core.adapter.FrameworkAdapter;
 import org.pac4j.core.config.Config;
 import org.pac4j.core.engine.LogoutLogic;
 import org.pac4j.undertow.context.UndertowParameters;
+import org.pac4j.undertow.trace.SecurityTrace;
+import org.pac4j.undertow.util.ConfigInitializer;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>This filter handles the (application + identity provider) logout process.</p>
  *
+ * <p>The default settings of the configuration are applied when the handler is created. The logout logic of the configuration
+ * is read on each request, so a later {@link Config#setLogoutLogic(LogoutLogic)} is taken into account; a new configuration
+ * must be installed with {@link #reload(Config)}.</p>
+ *
  * @author Jerome Leleu
  * @since 1.1.0
  */
@@ -17,44 +25,49 @@ public class LogoutHandler implements HttpHandler {
     
     private LogoutLogic logoutLogic;
 
-    private final Config config;
-
-    private String defaultUrl;
-
-    private String logoutUrlPattern;
-    
-    private Boolean localLogout;
-
-    private Boolean destroySession;
-
-    private Boolean centralLogout;
+    private final AtomicReference<Settings> settings;
 
     public LogoutHandler(final Config config) {
-        this.config = config;
+        this(config, null);
     }
 
     public LogoutHandler(final Config config, final String defaultUrl) {
-        this(config);
-        this.defaultUrl = defaultUrl;
+        this(config, defaultUrl, null);
     }
 
     public LogoutHandler(final Config config, final String defaultUrl, final String logoutUrlPattern) {
-        this(config, defaultUrl);
-        this.logoutUrlPattern = logoutUrlPattern;
+        this.settings = new AtomicReference<>(Settings.of(config, null, defaultUrl, logoutUrlPattern, null, null, null));
     }
 
     @Override
     public void handleRequest(final HttpServerExchange exchange) throws Exception {
-        FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
-        config.getLogoutLogic().perform(
-                this.config,
-                this.defaultUrl,
-                this.logoutUrlPattern,
-                this.localLogout,
-                this.destroySession,
-                this.centralLogout,
+        final Settings settings = this.settings.get();
+        final long start = SecurityTrace.start(exchange);
+        settings.resolveLogoutLogic().perform(
+                settings.config(),
+                settings.defaultUrl(),
+                settings.logoutUrlPattern(),
+                settings.localLogout(),
+                settings.destroySession(),
+                settings.centralLogout(),
                 new UndertowParameters(exchange)
         );
+        SecurityTrace.end(exchange, SecurityTrace.Phase.LOGOUT_LOGIC, start);
+    }
+
+    /**
+     * Replace the configuration. The new configuration is initialized before being used,
+     * the in-flight requests keep using the previous one.
+     *
+     * @param config the new configuration
+     */
+    public void reload(final Config config) {
+        ConfigInitializer.initialize(config);
+        settings.updateAndGet(s -> Settings.of(config, logoutLogic, s.defaultUrl(), s.logoutUrlPattern(), s.localLogout(), s.destroySession(), s.centralLogout()));
+    }
+
+    public Config getConfig() {
+        return settings.get().config();
     }
 
     public LogoutLogic getLogoutLogic() {
@@ -63,45 +76,64 @@ public class LogoutHandler implements HttpHandler {
 
     public void setLogoutLogic(final LogoutLogic logoutLogic) {
         this.logoutLogic = logoutLogic;
+        settings.updateAndGet(s -> Settings.of(s.config(), logoutLogic, s.defaultUrl(), s.logoutUrlPattern(), s.localLogout(), s.destroySession(), s.centralLogout()));
     }
 
     public String getDefaultUrl() {
-        return this.defaultUrl;
+        return settings.get().defaultUrl();
     }
 
     public void setDefaultUrl(final String defaultUrl) {
-        this.defaultUrl = defaultUrl;
+        settings.updateAndGet(s -> new Settings(s.config(), s.logoutLogic(), defaultUrl, s.logoutUrlPattern(), s.localLogout(), s.destroySession(), s.centralLogout()));
     }
 
     public String getLogoutUrlPattern() {
-        return logoutUrlPattern;
+        return settings.get().logoutUrlPattern();
     }
 
     public void setLogoutUrlPattern(final String logoutUrlPattern) {
-        this.logoutUrlPattern = logoutUrlPattern;
+        settings.updateAndGet(s -> new Settings(s.config(), s.logoutLogic(), s.defaultUrl(), logoutUrlPattern, s.localLogout(), s.destroySession(), s.centralLogout()));
     }
 
     public Boolean getLocalLogout() {
-        return localLogout;
+        return settings.get().localLogout();
     }
 
     public void setLocalLogout(final Boolean localLogout) {
-        this.localLogout = localLogout;
+        settings.updateAndGet(s -> new Settings(s.config(), s.logoutLogic(), s.defaultUrl(), s.logoutUrlPattern(), localLogout, s.destroySession(), s.centralLogout()));
     }
 
     public Boolean getDestroySession() {
-        return destroySession;
+        return settings.get().destroySession();
     }
 
     public void setDestroySession(final Boolean destroySession) {
-        this.destroySession = destroySession;
+        settings.updateAndGet(s -> new Settings(s.config(), s.logoutLogic(), s.defaultUrl(), s.logoutUrlPattern(), s.localLogout(), destroySession, s.centralLogout()));
     }
 
     public Boolean getCentralLogout() {
-        return centralLogout;
+        return settings.get().centralLogout();
     }
 
     public void setCentralLogout(final Boolean centralLogout) {
-        this.centralLogout = centralLogout;
+        settings.updateAndGet(s -> new Settings(s.config(), s.logoutLogic(), s.defaultUrl(), s.logoutUrlPattern(), s.localLogout(), s.destroySession(), centralLogout));
+    }
+
+    /**
+     * Immutable snapshot of the settings, read once per request. The default settings of the configuration are applied
+     * when the snapshot is built.
+     */
+    private record Settings(Config config, LogoutLogic logoutLogic, String defaultUrl, String logoutUrlPattern, Boolean localLogout,
+                            Boolean destroySession, Boolean centralLogout) {
+
+        static Settings of(final Config config, final LogoutLogic logoutLogic, final String defaultUrl, final String logoutUrlPattern,
+                           final Boolean localLogout, final Boolean destroySession, final Boolean centralLogout) {
+            FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
+            return new Settings(config, logoutLogic, defaultUrl, logoutUrlPattern, localLogout, destroySession, centralLogout);
+        }
+
+        LogoutLogic resolveLogoutLogic() {
+            return logoutLogic != null ? logoutLogic : config.getLogoutLogic();
+        }
     }
 }
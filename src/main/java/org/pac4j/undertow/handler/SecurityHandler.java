@@ -3,15 +3,30 @@ package org.pac4j.undertow.handler;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.util.StatusCodes;
 import org.pac4j.core.adapter.FrameworkAdapter;
 import org.pac4j.core.config.Config;
+import org.pac4j.core.context.HttpConstants;
 import org.pac4j.core.engine.SecurityLogic;
 import org.pac4j.undertow.context.UndertowParameters;
 import org.pac4j.undertow.profile.UndertowProfileManager;
+import org.pac4j.undertow.trace.SecurityTrace;
+import org.pac4j.undertow.util.ConfigInitializer;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>This filter protects an URL.</p>
  *
+ * <p>The excluded requests and the failure limiter are evaluated first, on the calling thread, then the security logic runs
+ * in blocking mode on a worker thread.</p>
+ *
+ * <p>The default settings of the configuration are applied when the handler is built. The security logic of the configuration
+ * is read on each request, so a later {@link Config#setSecurityLogic(SecurityLogic)} is taken into account; a new
+ * configuration must be installed with {@link #reload(Config)}. The handler returned by the <code>build</code> methods is a
+ * {@link SecurityHandler}: the methods which existed before the excluded requests keep their {@link HttpHandler} return type
+ * for binary compatibility.</p>
+ *
  * @author Jerome Leleu
  * @since 1.2.0
  */
@@ -21,21 +36,21 @@ public class SecurityHandler implements HttpHandler {
 
     private final HttpHandler toWrap;
 
-    private final Config config;
+    private final HttpHandler blockingHandler;
 
-    private String clients;
+    private final AtomicReference<Settings> settings;
 
-    private String authorizers;
+    private ExcludedRequests excludedRequests;
 
-    private String matchers;
+    private HttpHandler excludedHandler;
+
+    private AuthenticationFailureLimiter failureLimiter;
 
     protected SecurityHandler(final HttpHandler toWrap, final Config config, final String clients, final String authorizers, final String matchers) {
         this.toWrap = toWrap;
-        this.config = config;
-        this.clients = clients;
-        this.authorizers = authorizers;
-        this.matchers = matchers;
+        this.blockingHandler = new BlockingHandler(this::secure);
         config.setProfileManagerFactory(UndertowProfileManager::new);
+        this.settings = new AtomicReference<>(Settings.of(config, null, clients, authorizers, matchers));
     }
 
     public static HttpHandler build(final HttpHandler toWrap, Config config) {
@@ -55,27 +70,136 @@ public class SecurityHandler implements HttpHandler {
     }
 
     public static HttpHandler build(final HttpHandler toWrap, Config config, final String clients, final String authorizers, final String matchers, final SecurityLogic securityLogic) {
+        return build(toWrap, config, clients, authorizers, matchers, securityLogic, null);
+    }
+
+    /**
+     * Build the security handler.
+     *
+     * The requests matching the excluded requests are forwarded to the wrapped handler without evaluating the pac4j matchers:
+     * in blocking mode on a worker thread or, if the excluded requests are {@link ExcludedRequests#nonBlocking()}, on the I/O thread.
+     *
+     * @param toWrap the handler to protect
+     * @param config the configuration
+     * @param clients the clients
+     * @param authorizers the authorizers
+     * @param matchers the matchers
+     * @param securityLogic the security logic
+     * @param excludedRequests the requests excluded from the security
+     * @return the security handler
+     */
+    public static SecurityHandler build(final HttpHandler toWrap, Config config, final String clients, final String authorizers, final String matchers, final SecurityLogic securityLogic,
+                                        final ExcludedRequests excludedRequests) {
+        return build(toWrap, config, clients, authorizers, matchers, securityLogic, excludedRequests, null);
+    }
+
+    /**
+     * Build the security handler.
+     *
+     * The requests matching the excluded requests are forwarded to the wrapped handler without evaluating the pac4j matchers
+     * (see {@link ExcludedRequests#nonBlocking()}). The requests limited by the failure limiter are rejected with a 429 status code
+     * on the I/O thread, before the security logic runs.
+     *
+     * @param toWrap the handler to protect
+     * @param config the configuration
+     * @param clients the clients
+     * @param authorizers the authorizers
+     * @param matchers the matchers
+     * @param securityLogic the security logic
+     * @param excludedRequests the requests excluded from the security
+     * @param failureLimiter the limiter of the failed authentications
+     * @return the security handler
+     */
+    public static SecurityHandler build(final HttpHandler toWrap, Config config, final String clients, final String authorizers, final String matchers, final SecurityLogic securityLogic,
+                                        final ExcludedRequests excludedRequests, final AuthenticationFailureLimiter failureLimiter) {
         final SecurityHandler securityHandler = new SecurityHandler(toWrap, config, clients, authorizers, matchers);
         if (securityLogic != null) {
             securityHandler.setSecurityLogic(securityLogic);
         }
-        return new BlockingHandler(securityHandler);
+        securityHandler.setExcludedRequests(excludedRequests);
+        securityHandler.setFailureLimiter(failureLimiter);
+        return securityHandler;
     }
 
     @Override
     public void handleRequest(final HttpServerExchange exchange) throws Exception {
-        FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
-        config.getSecurityLogic().perform(
-                this.config,
+        if (excludedRequests != null && excludedRequests.matches(exchange)) {
+            excludedHandler.handleRequest(exchange);
+        } else if (failureLimiter != null && failureLimiter.isLimited(exchange)) {
+            exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS);
+            exchange.endExchange();
+        } else {
+            blockingHandler.handleRequest(exchange);
+        }
+    }
+
+    private void secure(final HttpServerExchange exchange) throws Exception {
+        final Settings settings = this.settings.get();
+        final long start = SecurityTrace.start(exchange);
+        final boolean[] granted = new boolean[1];
+        settings.resolveSecurityLogic().perform(
+                settings.config(),
                 (ctx, store, profiles) -> {
+                    granted[0] = true;
+                    SecurityTrace.end(exchange, SecurityTrace.Phase.SECURITY_LOGIC, start);
                     this.toWrap.handleRequest(exchange);
                     return null;
                 },
-                this.clients,
-                this.authorizers,
-                this.matchers,
+                settings.clients(),
+                settings.authorizers(),
+                settings.matchers(),
                 new UndertowParameters(exchange)
         );
+        if (!granted[0]) {
+            // when granted, the phase has ended before calling the wrapped handler
+            SecurityTrace.end(exchange, SecurityTrace.Phase.SECURITY_LOGIC, start);
+        }
+        if (failureLimiter != null && !granted[0] && exchange.getStatusCode() == HttpConstants.UNAUTHORIZED
+                && failureLimiter.hasCredentials(exchange)) {
+            failureLimiter.recordFailure(exchange);
+        }
+    }
+
+    /**
+     * Replace the configuration. The new configuration is initialized before being used,
+     * the in-flight requests keep using the previous one.
+     *
+     * @param config the new configuration
+     */
+    public void reload(final Config config) {
+        config.setProfileManagerFactory(UndertowProfileManager::new);
+        ConfigInitializer.initialize(config);
+        settings.updateAndGet(s -> Settings.of(config, securityLogic, s.clients(), s.authorizers(), s.matchers()));
+    }
+
+    public Config getConfig() {
+        return settings.get().config();
+    }
+
+    public ExcludedRequests getExcludedRequests() {
+        return excludedRequests;
+    }
+
+    /**
+     * Define the requests excluded from the security. It must be called before the handler is started.
+     *
+     * @param excludedRequests the excluded requests
+     */
+    public void setExcludedRequests(final ExcludedRequests excludedRequests) {
+        this.excludedRequests = excludedRequests;
+        if (excludedRequests == null) {
+            this.excludedHandler = null;
+        } else {
+            this.excludedHandler = excludedRequests.isNonBlocking() ? toWrap : new BlockingHandler(toWrap);
+        }
+    }
+
+    public AuthenticationFailureLimiter getFailureLimiter() {
+        return failureLimiter;
+    }
+
+    public void setFailureLimiter(final AuthenticationFailureLimiter failureLimiter) {
+        this.failureLimiter = failureLimiter;
     }
 
     protected SecurityLogic getSecurityLogic() {
@@ -84,29 +208,51 @@ public class SecurityHandler implements HttpHandler {
 
     protected void setSecurityLogic(final SecurityLogic securityLogic) {
         this.securityLogic = securityLogic;
+        settings.updateAndGet(s -> Settings.of(s.config(), securityLogic, s.clients(), s.authorizers(), s.matchers()));
     }
 
     public String getClients() {
-        return clients;
+        return settings.get().clients();
     }
 
     public void setClients(final String clients) {
-        this.clients = clients;
+        settings.updateAndGet(s -> s.withParameters(clients, s.authorizers(), s.matchers()));
     }
 
     public String getAuthorizers() {
-        return authorizers;
+        return settings.get().authorizers();
     }
 
     public void setAuthorizers(final String authorizers) {
-        this.authorizers = authorizers;
+        settings.updateAndGet(s -> s.withParameters(s.clients(), authorizers, s.matchers()));
     }
 
     public String getMatchers() {
-        return matchers;
+        return settings.get().matchers();
     }
 
     public void setMatchers(final String matchers) {
-        this.matchers = matchers;
+        settings.updateAndGet(s -> s.withParameters(s.clients(), s.authorizers(), matchers));
+    }
+
+    /**
+     * Immutable snapshot of the settings, read once per request. The default settings of the configuration are applied
+     * when the snapshot is built.
+     */
+    private record Settings(Config config, SecurityLogic securityLogic, String clients, String authorizers, String matchers) {
+
+        static Settings of(final Config config, final SecurityLogic securityLogic, final String clients, final String authorizers,
+                           final String matchers) {
+            FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
+            return new Settings(config, securityLogic, clients, authorizers, matchers);
+        }
+
+        SecurityLogic resolveSecurityLogic() {
+            return securityLogic != null ? securityLogic : config.getSecurityLogic();
+        }
+
+        Settings withParameters(final String clients, final String authorizers, final String matchers) {
+            return new Settings(config, securityLogic, clients, authorizers, matchers);
+        }
     }
 }
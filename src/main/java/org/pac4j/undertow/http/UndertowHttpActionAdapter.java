@@ -9,6 +9,7 @@ import org.pac4j.core.exception.http.WithContentAction;
 import org.pac4j.core.exception.http.WithLocationAction;
 import org.pac4j.core.http.adapter.HttpActionAdapter;
 import org.pac4j.undertow.context.UndertowWebContext;
+import org.pac4j.undertow.trace.SecurityTrace;
 
 /**
  * The specific {@link HttpActionAdapter} for Undertow.
@@ -25,6 +26,8 @@ public class UndertowHttpActionAdapter implements HttpActionAdapter {
         if (action != null) {
             final int code = action.getCode();
             final HttpServerExchange exchange = ((UndertowWebContext) context).getExchange();
+            // only the synchronous part is timed: the content is sent asynchronously
+            final long start = SecurityTrace.start(exchange);
             exchange.setStatusCode(code);
 
             if (action instanceof WithLocationAction withLocationAction) {
@@ -33,6 +36,7 @@ public class UndertowHttpActionAdapter implements HttpActionAdapter {
                 final String content = withContentAction.getContent();
                 exchange.getResponseSender().send(content);
             }
+            SecurityTrace.end(exchange, SecurityTrace.Phase.ACTION_ADAPTER, start);
 
             return null;
         }
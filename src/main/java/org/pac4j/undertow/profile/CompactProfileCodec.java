@@ -0,0 +1,430 @@
+package org.pac4j.undertow.profile;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.BasicUserProfile;
+import org.pac4j.core.profile.UserProfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary {@link ProfileCodec}.
+ *
+ * The attribute names are written once per payload in a dictionary (or not at all if they belong to the known attributes
+ * given at construction time), the simple attribute values are written in a binary form and only the other values
+ * fall back to the Java serialization. The payload can optionally be compressed above a size threshold.
+ *
+ * <p>Only the identifier, linked identifier, client name, remembered flag, roles, attributes and authentication attributes
+ * of a profile are written in the compact form: the profile is rebuilt with its public no-arg constructor, which is exactly
+ * what the {@link java.io.Externalizable} serialization of {@link BasicUserProfile} restores. A profile whose class does not
+ * extend {@link BasicUserProfile}, has no public no-arg constructor or overrides <code>writeExternal</code> /
+ * <code>readExternal</code> is entirely written with the Java serialization, so no state is lost. Like with the Java
+ * serialization, a {@link BasicUserProfile} without public no-arg constructor cannot be decoded.</p>
+ *
+ * <p>The profile classes and the serialized values are loaded with the thread context class loader
+ * (or the class loader of this codec if there is none).</p>
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class CompactProfileCodec implements ProfileCodec {
+
+    private static final int VERSION = 2;
+
+    private static final int FLAG_COMPRESSED = 1;
+
+    private static final int FORMAT_COMPACT = 0;
+    private static final int FORMAT_SERIALIZED = 1;
+
+    private static final ClassValue<Boolean> COMPACT_PROFILE_CLASSES = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            return isCompactProfileClass(type);
+        }
+    };
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_BOOLEAN = 2;
+    private static final int TYPE_INTEGER = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_DATE = 6;
+    private static final int TYPE_LIST = 7;
+    private static final int TYPE_SERIALIZED = 8;
+
+    private final List<String> knownAttributes;
+
+    private final Map<String, Integer> knownAttributeIndexes = new HashMap<>();
+
+    private boolean compress;
+
+    private int compressionThreshold = 512;
+
+    public CompactProfileCodec() {
+        this(List.of());
+    }
+
+    /**
+     * Build a codec with a preset dictionary of attribute names which are never written in the payloads.
+     * The same list must be used to decode the payloads.
+     *
+     * @param knownAttributes the known attribute names
+     */
+    public CompactProfileCodec(final List<String> knownAttributes) {
+        this.knownAttributes = List.copyOf(knownAttributes);
+        for (int i = 0; i < this.knownAttributes.size(); i++) {
+            knownAttributeIndexes.put(this.knownAttributes.get(i), i);
+        }
+    }
+
+    @Override
+    public byte[] encode(final Map<String, UserProfile> profiles) {
+        try {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeProfiles(new DataOutputStream(body), profiles);
+
+            final ByteArrayOutputStream result = new ByteArrayOutputStream(body.size() + 2);
+            result.write(VERSION);
+            if (compress && body.size() >= compressionThreshold) {
+                result.write(FLAG_COMPRESSED);
+                try (OutputStream deflater = new DeflaterOutputStream(result)) {
+                    body.writeTo(deflater);
+                }
+            } else {
+                result.write(0);
+                body.writeTo(result);
+            }
+            return result.toByteArray();
+        } catch (final IOException e) {
+            throw new TechnicalException("Cannot encode profiles", e);
+        }
+    }
+
+    @Override
+    public LinkedHashMap<String, UserProfile> decode(final byte[] data) {
+        if (data.length < 2 || data[0] != VERSION) {
+            throw new TechnicalException("Unsupported encoded profiles version");
+        }
+        final InputStream raw = new ByteArrayInputStream(data, 2, data.length - 2);
+        try (DataInputStream in = new DataInputStream((data[1] & FLAG_COMPRESSED) != 0 ? new InflaterInputStream(raw) : raw)) {
+            return readProfiles(in);
+        } catch (final IOException | ReflectiveOperationException e) {
+            throw new TechnicalException("Cannot decode profiles", e);
+        }
+    }
+
+    private void writeProfiles(final DataOutputStream out, final Map<String, UserProfile> profiles) throws IOException {
+        final Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (final UserProfile profile : profiles.values()) {
+            if (COMPACT_PROFILE_CLASSES.get(profile.getClass())) {
+                collectNames(dictionary, profile.getAttributes().keySet());
+                collectNames(dictionary, ((BasicUserProfile) profile).getAuthenticationAttributes().keySet());
+            }
+        }
+        writeSize(out, dictionary.size());
+        for (final String name : dictionary.keySet()) {
+            writeString(out, name);
+        }
+
+        writeSize(out, profiles.size());
+        for (final Map.Entry<String, UserProfile> entry : profiles.entrySet()) {
+            final UserProfile profile = entry.getValue();
+            writeString(out, entry.getKey());
+            if (!COMPACT_PROFILE_CLASSES.get(profile.getClass())) {
+                out.writeByte(FORMAT_SERIALIZED);
+                writeSerialized(out, profile);
+                continue;
+            }
+            out.writeByte(FORMAT_COMPACT);
+            writeString(out, profile.getClass().getName());
+            writeNullableString(out, profile.getId());
+            writeNullableString(out, profile.getLinkedId());
+            writeNullableString(out, profile.getClientName());
+            out.writeBoolean(profile.isRemembered());
+            writeSize(out, profile.getRoles().size());
+            for (final String role : profile.getRoles()) {
+                writeString(out, role);
+            }
+            writeAttributes(out, dictionary, profile.getAttributes());
+            writeAttributes(out, dictionary, ((BasicUserProfile) profile).getAuthenticationAttributes());
+        }
+    }
+
+    private void collectNames(final Map<String, Integer> dictionary, final Collection<String> names) {
+        for (final String name : names) {
+            if (!knownAttributeIndexes.containsKey(name) && !dictionary.containsKey(name)) {
+                dictionary.put(name, knownAttributes.size() + dictionary.size());
+            }
+        }
+    }
+
+    private void writeAttributes(final DataOutputStream out, final Map<String, Integer> dictionary,
+                                 final Map<String, Object> attributes) throws IOException {
+        writeSize(out, attributes.size());
+        for (final Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            final Integer known = knownAttributeIndexes.get(attribute.getKey());
+            writeSize(out, known != null ? known : dictionary.get(attribute.getKey()));
+            writeValue(out, attribute.getValue());
+        }
+    }
+
+    private void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, s);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof Integer i) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(l);
+        } else if (value instanceof Double d) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(d);
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value.getClass() == ArrayList.class) {
+            final List<?> list = (List<?>) value;
+            out.writeByte(TYPE_LIST);
+            writeSize(out, list.size());
+            for (final Object element : list) {
+                writeValue(out, element);
+            }
+        } else {
+            out.writeByte(TYPE_SERIALIZED);
+            writeSerialized(out, value);
+        }
+    }
+
+    private static void writeSerialized(final DataOutputStream out, final Object value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(value);
+        }
+        writeSize(out, bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Object readSerialized(final DataInputStream in) throws IOException, ClassNotFoundException {
+        final byte[] bytes = new byte[readSize(in)];
+        in.readFully(bytes);
+        try (ObjectInputStream ois = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        }
+    }
+
+    private static boolean isCompactProfileClass(final Class<?> profileClass) {
+        if (!BasicUserProfile.class.isAssignableFrom(profileClass) || !Modifier.isPublic(profileClass.getModifiers())) {
+            return false;
+        }
+        if (Arrays.stream(profileClass.getConstructors()).noneMatch(constructor -> constructor.getParameterCount() == 0)) {
+            return false;
+        }
+        try {
+            return profileClass.getMethod("writeExternal", ObjectOutput.class).getDeclaringClass() == BasicUserProfile.class
+                && profileClass.getMethod("readExternal", ObjectInput.class).getDeclaringClass() == BasicUserProfile.class;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ClassLoader classLoader() {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : CompactProfileCodec.class.getClassLoader();
+    }
+
+    private LinkedHashMap<String, UserProfile> readProfiles(final DataInputStream in)
+            throws IOException, ReflectiveOperationException {
+        final int dictionarySize = readSize(in);
+        final List<String> dictionary = new ArrayList<>(knownAttributes.size() + dictionarySize);
+        dictionary.addAll(knownAttributes);
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary.add(readString(in));
+        }
+
+        final int nbProfiles = readSize(in);
+        final LinkedHashMap<String, UserProfile> profiles = new LinkedHashMap<>(nbProfiles * 2);
+        for (int i = 0; i < nbProfiles; i++) {
+            final String key = readString(in);
+            if (in.readUnsignedByte() == FORMAT_SERIALIZED) {
+                profiles.put(key, (UserProfile) readSerialized(in));
+                continue;
+            }
+            final UserProfile profile = newProfile(readString(in));
+            final String id = readNullableString(in);
+            if (id != null) {
+                profile.setId(id);
+            }
+            profile.setLinkedId(readNullableString(in));
+            profile.setClientName(readNullableString(in));
+            profile.setRemembered(in.readBoolean());
+            final int nbRoles = readSize(in);
+            final List<String> roles = new ArrayList<>(nbRoles);
+            for (int j = 0; j < nbRoles; j++) {
+                roles.add(readString(in));
+            }
+            profile.addRoles(roles);
+            final int nbAttributes = readSize(in);
+            for (int j = 0; j < nbAttributes; j++) {
+                profile.addAttribute(dictionary.get(readSize(in)), readValue(in));
+            }
+            final int nbAuthenticationAttributes = readSize(in);
+            for (int j = 0; j < nbAuthenticationAttributes; j++) {
+                profile.addAuthenticationAttribute(dictionary.get(readSize(in)), readValue(in));
+            }
+            profiles.put(key, profile);
+        }
+        return profiles;
+    }
+
+    private UserProfile newProfile(final String className) throws ReflectiveOperationException {
+        final Class<?> profileClass = Class.forName(className, true, classLoader());
+        if (!UserProfile.class.isAssignableFrom(profileClass)) {
+            throw new TechnicalException("Not a user profile class: " + className);
+        }
+        return (UserProfile) profileClass.getDeclaredConstructor().newInstance();
+    }
+
+    private Object readValue(final DataInputStream in) throws IOException, ReflectiveOperationException {
+        final int type = in.readUnsignedByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_DATE:
+                return new Date(in.readLong());
+            case TYPE_LIST:
+                final int size = readSize(in);
+                final List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TYPE_SERIALIZED:
+                return readSerialized(in);
+            default:
+                throw new TechnicalException("Unknown attribute type: " + type);
+        }
+    }
+
+    private static void writeSize(final DataOutputStream out, final int size) throws IOException {
+        int value = size;
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readSize(final DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeSize(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[readSize(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    public List<String> getKnownAttributes() {
+        return knownAttributes;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(final boolean compress) {
+        this.compress = compress;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(final int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Object input stream resolving the classes with the same class loader as the profile classes.
+     */
+    private static final class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private ClassLoaderObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, classLoader());
+            } catch (final ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
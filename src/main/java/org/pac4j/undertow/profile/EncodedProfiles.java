@@ -0,0 +1,138 @@
+package org.pac4j.undertow.profile;
+
+import org.pac4j.core.profile.BasicUserProfile;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.ProfileHelper;
+import org.pac4j.core.profile.UserProfile;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The user profiles, as encoded by a {@link ProfileCodec}, saved in the Undertow session.
+ *
+ * The principal identifier and the roles are readable directly, the profiles themselves are only decoded on first access.
+ *
+ * They can only be used without the profile manager if none of the profiles can expire, i.e. none of their classes
+ * overrides {@link BasicUserProfile#isExpired()} below {@link CommonProfile} (whose profiles never expire): the expiration
+ * rules of the other profiles (like the access token expiration of the OIDC profiles) are only known to the profile manager,
+ * which removes or renews the expired profiles.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class EncodedProfiles implements Serializable {
+
+    private static final long serialVersionUID = -5276543180346521958L;
+
+    private static final ClassValue<Boolean> EXPIRABLE_PROFILE_CLASSES = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            try {
+                final Class<?> declaringClass = type.getMethod("isExpired").getDeclaringClass();
+                return declaringClass != BasicUserProfile.class && declaringClass != CommonProfile.class;
+            } catch (final NoSuchMethodException e) {
+                return true;
+            }
+        }
+    };
+
+    private final byte[] data;
+
+    private final String principalId;
+
+    private final Set<String> roles;
+
+    private final boolean neverExpires;
+
+    private transient volatile LinkedHashMap<String, UserProfile> profiles;
+
+    public EncodedProfiles(final byte[] data, final String principalId, final Set<String> roles, final boolean neverExpires) {
+        this.data = data.clone();
+        this.principalId = principalId;
+        this.roles = Set.copyOf(roles);
+        this.neverExpires = neverExpires;
+    }
+
+    /**
+     * Encode the user profiles. The decoded profiles are kept as long as the result is not serialized.
+     *
+     * @param codec the codec
+     * @param profiles the user profiles
+     * @return the encoded profiles
+     */
+    public static EncodedProfiles encode(final ProfileCodec codec, final Map<String, UserProfile> profiles) {
+        final LinkedHashMap<String, UserProfile> copy = new LinkedHashMap<>(profiles);
+        final Set<String> roles = new HashSet<>();
+        boolean neverExpires = true;
+        for (final UserProfile profile : copy.values()) {
+            roles.addAll(profile.getRoles());
+            neverExpires &= !EXPIRABLE_PROFILE_CLASSES.get(profile.getClass());
+        }
+        final String principalId = ProfileHelper.flatIntoOneProfile(copy.values()).map(UserProfile::getId).orElse(null);
+        final EncodedProfiles encodedProfiles = new EncodedProfiles(codec.encode(copy), principalId, roles, neverExpires);
+        encodedProfiles.profiles = copy;
+        return encodedProfiles;
+    }
+
+    /**
+     * Get the user profiles, decoding them on first access.
+     *
+     * @param codec the codec used to encode the profiles
+     * @return a copy of the user profiles map
+     */
+    public LinkedHashMap<String, UserProfile> getProfiles(final ProfileCodec codec) {
+        LinkedHashMap<String, UserProfile> decoded = profiles;
+        if (decoded == null) {
+            decoded = codec.decode(data);
+            profiles = decoded;
+        }
+        return new LinkedHashMap<>(decoded);
+    }
+
+    /**
+     * Whether none of the profiles can expire: otherwise, the profiles must be read through the profile manager,
+     * which removes or renews the expired profiles. The encoded profiles deserialized from a previous format are
+     * considered as expirable.
+     *
+     * @return whether the profiles never expire
+     */
+    public boolean isNeverExpiring() {
+        return neverExpires;
+    }
+
+    /**
+     * Whether these encoded profiles hold exactly the given profiles (same keys and same instances), without decoding them.
+     *
+     * @param otherProfiles the profiles to compare with
+     * @return whether the profiles are the same
+     */
+    public boolean holds(final Map<String, UserProfile> otherProfiles) {
+        final LinkedHashMap<String, UserProfile> decoded = profiles;
+        if (decoded == null || otherProfiles == null || decoded.size() != otherProfiles.size()) {
+            return false;
+        }
+        for (final Map.Entry<String, UserProfile> entry : decoded.entrySet()) {
+            if (otherProfiles.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public byte[] getData() {
+        return data.clone();
+    }
+
+    public String getPrincipalId() {
+        return principalId;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+}
@@ -0,0 +1,31 @@
+package org.pac4j.undertow.profile;
+
+import org.pac4j.core.profile.UserProfile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Codec used to store the user profiles in the Undertow session in another format than the default Java serialization.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public interface ProfileCodec {
+
+    /**
+     * Encode the user profiles.
+     *
+     * @param profiles the user profiles
+     * @return the encoded profiles
+     */
+    byte[] encode(Map<String, UserProfile> profiles);
+
+    /**
+     * Decode the user profiles.
+     *
+     * @param data the encoded profiles
+     * @return the user profiles
+     */
+    LinkedHashMap<String, UserProfile> decode(byte[] data);
+}
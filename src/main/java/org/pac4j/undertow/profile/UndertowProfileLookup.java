@@ -0,0 +1,94 @@
+package org.pac4j.undertow.profile;
+
+import io.undertow.security.api.SecurityContext;
+import io.undertow.server.HttpServerExchange;
+import org.pac4j.core.adapter.FrameworkAdapter;
+import org.pac4j.core.config.Config;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.context.session.SessionStore;
+import org.pac4j.core.profile.UserProfile;
+import org.pac4j.undertow.account.Pac4jAccount;
+import org.pac4j.undertow.context.UndertowParameters;
+import org.pac4j.undertow.context.UndertowSessionStore;
+import org.pac4j.undertow.util.UndertowHelper;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking access to the user profiles for the handlers running on the I/O threads.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class UndertowProfileLookup {
+
+    private UndertowProfileLookup() {}
+
+    /**
+     * Get the user profiles of the current exchange.
+     *
+     * They are returned immediately from the {@link Pac4jAccount} of the security context if the user is already authenticated,
+     * otherwise they are read from the session store on a worker thread of the connection. In this latter case, the caller must
+     * have dispatched the exchange (for example with <code>exchange.dispatch(SameThreadExecutor.INSTANCE, ...)</code>)
+     * so that it is not ended before the returned stage completes.
+     *
+     * @param exchange the Undertow exchange
+     * @param config the configuration
+     * @return the user profiles
+     */
+    public static CompletionStage<List<UserProfile>> getProfiles(final HttpServerExchange exchange, final Config config) {
+        final SecurityContext securityContext = exchange.getSecurityContext();
+        if (securityContext != null && securityContext.getAuthenticatedAccount() instanceof Pac4jAccount account) {
+            return CompletableFuture.completedFuture(account.getProfiles());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
+            final UndertowParameters parameters = new UndertowParameters(exchange);
+            final WebContext context = config.getWebContextFactory().newContext(parameters);
+            final SessionStore sessionStore = config.getSessionStoreFactory().newSessionStore(parameters);
+            return config.getProfileManagerFactory().apply(context, sessionStore).getProfiles();
+        }, exchange.getConnection().getWorker());
+    }
+
+    /**
+     * Get the account of the current exchange, under the same conditions as {@link #getProfiles(HttpServerExchange, Config)}.
+     *
+     * When the session store uses a {@link ProfileCodec}, the account is built from the {@link EncodedProfiles} without decoding
+     * the profiles: the principal and the roles are available directly. If one of the profiles can expire, the profiles are read
+     * through the profile manager instead, which removes or renews the expired profiles.
+     *
+     * @param exchange the Undertow exchange
+     * @param config the configuration
+     * @return the account, if the user is authenticated
+     */
+    public static CompletionStage<Optional<Pac4jAccount>> getAccount(final HttpServerExchange exchange, final Config config) {
+        final SecurityContext securityContext = exchange.getSecurityContext();
+        if (securityContext != null && securityContext.getAuthenticatedAccount() instanceof Pac4jAccount account) {
+            return CompletableFuture.completedFuture(Optional.of(account));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
+            final UndertowParameters parameters = new UndertowParameters(exchange);
+            final WebContext context = config.getWebContextFactory().newContext(parameters);
+            final SessionStore sessionStore = config.getSessionStoreFactory().newSessionStore(parameters);
+            if (sessionStore instanceof UndertowSessionStore undertowSessionStore) {
+                final Optional<EncodedProfiles> encodedProfiles = undertowSessionStore.getEncodedProfiles(context);
+                if (encodedProfiles.isPresent() && encodedProfiles.get().isNeverExpiring()) {
+                    if (encodedProfiles.get().getPrincipalId() == null) {
+                        return Optional.<Pac4jAccount>empty();
+                    }
+                    return Optional.of(UndertowHelper.populateContext(exchange, encodedProfiles.get(), undertowSessionStore.getProfileCodec()));
+                }
+            }
+            config.getProfileManagerFactory().apply(context, sessionStore).getProfiles();
+            final SecurityContext populatedContext = exchange.getSecurityContext();
+            if (populatedContext != null && populatedContext.getAuthenticatedAccount() instanceof Pac4jAccount account) {
+                return Optional.of(account);
+            }
+            return Optional.<Pac4jAccount>empty();
+        }, exchange.getConnection().getWorker());
+    }
+}
@@ -4,10 +4,13 @@ import org.pac4j.core.context.WebContext;
 import org.pac4j.core.context.session.SessionStore;
 import org.pac4j.core.profile.ProfileManager;
 import org.pac4j.core.profile.UserProfile;
+import org.pac4j.undertow.context.UndertowSessionStore;
 import org.pac4j.undertow.context.UndertowWebContext;
+import org.pac4j.undertow.trace.SecurityTrace;
 import org.pac4j.undertow.util.UndertowHelper;
 
 import java.util.LinkedHashMap;
+import java.util.Optional;
 
 /**
  * Specific profile manager for Undertow.
@@ -23,8 +26,21 @@ public class UndertowProfileManager extends ProfileManager {
 
     protected LinkedHashMap<String, UserProfile> retrieveAll(boolean readFromSession) {
 
+        final UndertowWebContext undertowContext = (UndertowWebContext) context;
+        final long start = SecurityTrace.start(undertowContext.getExchange());
         final LinkedHashMap<String, UserProfile> profiles = super.retrieveAll(readFromSession);
-        UndertowHelper.populateContext((UndertowWebContext) context, profiles);
+        final Optional<EncodedProfiles> encodedProfiles = readFromSession && !profiles.isEmpty()
+                && sessionStore instanceof UndertowSessionStore undertowSessionStore
+                ? undertowSessionStore.getEncodedProfiles(context) : Optional.empty();
+        if (encodedProfiles.isPresent() && encodedProfiles.get().holds(profiles)) {
+            // the profiles are the ones saved in the session, already checked for expiration by the profile manager:
+            // reuse their principal and roles
+            UndertowHelper.populateContext(undertowContext.getExchange(), encodedProfiles.get(),
+                    ((UndertowSessionStore) sessionStore).getProfileCodec());
+        } else {
+            UndertowHelper.populateContext(undertowContext, profiles);
+        }
+        SecurityTrace.end(undertowContext.getExchange(), SecurityTrace.Phase.PROFILE_RETRIEVAL, start);
         return profiles;
     }
 }
@@ -0,0 +1,129 @@
+package org.pac4j.undertow.trace;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+
+import java.util.Arrays;
+
+/**
+ * Timings of the security phases of an exchange, saved as an attachment by the {@link SecurityTraceHandler}.
+ *
+ * Nothing is recorded for the exchanges without trace.
+ *
+ * Every phase records its exclusive time: the phases started while another one is running (the session lookup inside
+ * the profile retrieval, both inside a logic phase...) are subtracted from it, so the phases of a trace do not overlap
+ * and can be summed.
+ *
+ * The action adapter phase only covers the synchronous part of the response: the content is sent asynchronously by Undertow.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class SecurityTrace {
+
+    /** The traced phases */
+    public enum Phase {
+        SECURITY_LOGIC,
+        CALLBACK_LOGIC,
+        LOGOUT_LOGIC,
+        SESSION_LOOKUP,
+        PROFILE_RETRIEVAL,
+        ACTION_ADAPTER
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final int INITIAL_DEPTH = 4;
+
+    public static final AttachmentKey<SecurityTrace> ATTACHMENT_KEY = AttachmentKey.create(SecurityTrace.class);
+
+    private final long[] nanos = new long[PHASES.length];
+
+    private final boolean[] recorded = new boolean[PHASES.length];
+
+    /** Start time of the running phases, innermost last */
+    private long[] startNanos = new long[INITIAL_DEPTH];
+
+    /** Time spent in the phases nested in each running phase */
+    private long[] nestedNanos = new long[INITIAL_DEPTH];
+
+    private int depth;
+
+    /**
+     * Start timing a phase.
+     *
+     * @param exchange the Undertow exchange
+     * @return the token to give to {@link #end(HttpServerExchange, Phase, long)} or 0 if the exchange is not traced
+     */
+    public static long start(final HttpServerExchange exchange) {
+        final SecurityTrace trace = exchange.getAttachment(ATTACHMENT_KEY);
+        if (trace == null) {
+            return 0L;
+        }
+        if (trace.depth == trace.startNanos.length) {
+            trace.startNanos = Arrays.copyOf(trace.startNanos, trace.depth * 2);
+            trace.nestedNanos = Arrays.copyOf(trace.nestedNanos, trace.depth * 2);
+        }
+        trace.startNanos[trace.depth] = System.nanoTime();
+        trace.nestedNanos[trace.depth] = 0L;
+        trace.depth++;
+        return trace.depth;
+    }
+
+    /**
+     * Stop timing a phase and add its exclusive time to the trace. The phases started after it and not ended
+     * (because of an exception) are discarded.
+     *
+     * @param exchange the Undertow exchange
+     * @param phase the phase
+     * @param token the token returned by {@link #start(HttpServerExchange)}
+     */
+    public static void end(final HttpServerExchange exchange, final Phase phase, final long token) {
+        final SecurityTrace trace = exchange.getAttachment(ATTACHMENT_KEY);
+        if (trace == null || token <= 0L || token > trace.depth) {
+            return;
+        }
+        final int index = (int) token - 1;
+        final long elapsed = System.nanoTime() - trace.startNanos[index];
+        trace.nanos[phase.ordinal()] += Math.max(elapsed - trace.nestedNanos[index], 0L);
+        trace.recorded[phase.ordinal()] = true;
+        trace.depth = index;
+        if (index > 0) {
+            trace.nestedNanos[index - 1] += elapsed;
+        }
+    }
+
+    /**
+     * Whether a phase has been recorded.
+     *
+     * @param phase the phase
+     * @return whether the phase has been recorded
+     */
+    public boolean isRecorded(final Phase phase) {
+        return recorded[phase.ordinal()];
+    }
+
+    /**
+     * Get the time spent in a phase.
+     *
+     * @param phase the phase
+     * @return the time in microseconds
+     */
+    public long getMicros(final Phase phase) {
+        return nanos[phase.ordinal()] / 1000L;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (final Phase phase : PHASES) {
+            if (recorded[phase.ordinal()]) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(phase.name()).append('=').append(getMicros(phase));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package org.pac4j.undertow.trace;
+
+import io.undertow.attribute.ExchangeAttribute;
+import io.undertow.attribute.ExchangeAttributeBuilder;
+import io.undertow.attribute.ReadOnlyAttributeException;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Exchange attribute exposing the security trace, in microseconds: <code>%{pac4j-trace}</code> prints all the recorded phases
+ * and <code>%{pac4j-trace,SESSION_LOOKUP}</code> prints a single phase.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class SecurityTraceAttribute implements ExchangeAttribute {
+
+    private static final String TOKEN = "pac4j-trace";
+
+    private final SecurityTrace.Phase phase;
+
+    public SecurityTraceAttribute(final SecurityTrace.Phase phase) {
+        this.phase = phase;
+    }
+
+    @Override
+    public String readAttribute(final HttpServerExchange exchange) {
+        final SecurityTrace trace = exchange.getAttachment(SecurityTrace.ATTACHMENT_KEY);
+        if (trace == null) {
+            return null;
+        }
+        return phase == null ? trace.toString() : Long.toString(trace.getMicros(phase));
+    }
+
+    @Override
+    public void writeAttribute(final HttpServerExchange exchange, final String newValue) throws ReadOnlyAttributeException {
+        throw new ReadOnlyAttributeException(TOKEN, newValue);
+    }
+
+    public static final class Builder implements ExchangeAttributeBuilder {
+
+        @Override
+        public String name() {
+            return "pac4j security trace";
+        }
+
+        @Override
+        public ExchangeAttribute build(final String token) {
+            if (token.equals("%{" + TOKEN + "}")) {
+                return new SecurityTraceAttribute(null);
+            }
+            final String prefix = "%{" + TOKEN + ",";
+            if (token.startsWith(prefix) && token.endsWith("}")) {
+                return new SecurityTraceAttribute(SecurityTrace.Phase.valueOf(token.substring(prefix.length(), token.length() - 1)));
+            }
+            return null;
+        }
+
+        @Override
+        public int priority() {
+            return 0;
+        }
+    }
+}
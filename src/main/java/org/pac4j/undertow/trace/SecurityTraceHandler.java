@@ -0,0 +1,46 @@
+package org.pac4j.undertow.trace;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * <p>This handler enables the security trace for the exchanges it handles.</p>
+ *
+ * <p>It must be placed before the pac4j handlers (and the access log handler, to use the <code>%{pac4j-trace}</code> attribute).</p>
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public class SecurityTraceHandler implements HttpHandler {
+
+    private final HttpHandler next;
+
+    private final SecurityTraceListener listener;
+
+    public SecurityTraceHandler(final HttpHandler next) {
+        this(next, null);
+    }
+
+    public SecurityTraceHandler(final HttpHandler next, final SecurityTraceListener listener) {
+        this.next = next;
+        this.listener = listener;
+    }
+
+    @Override
+    public void handleRequest(final HttpServerExchange exchange) throws Exception {
+        if (exchange.getAttachment(SecurityTrace.ATTACHMENT_KEY) == null) {
+            final SecurityTrace trace = new SecurityTrace();
+            exchange.putAttachment(SecurityTrace.ATTACHMENT_KEY, trace);
+            if (listener != null) {
+                exchange.addExchangeCompleteListener((ex, nextListener) -> {
+                    try {
+                        listener.onTrace(ex, trace);
+                    } finally {
+                        nextListener.proceed();
+                    }
+                });
+            }
+        }
+        next.handleRequest(exchange);
+    }
+}
@@ -0,0 +1,21 @@
+package org.pac4j.undertow.trace;
+
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Listener notified of the security trace when a traced exchange completes.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+@FunctionalInterface
+public interface SecurityTraceListener {
+
+    /**
+     * Called when the exchange completes.
+     *
+     * @param exchange the Undertow exchange
+     * @param trace the security trace
+     */
+    void onTrace(HttpServerExchange exchange, SecurityTrace trace);
+}
@@ -0,0 +1,109 @@
+package org.pac4j.undertow.util;
+
+import org.pac4j.core.adapter.FrameworkAdapter;
+import org.pac4j.core.client.Client;
+import org.pac4j.core.config.Config;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.util.InitializableObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Eagerly initialize the clients, authorizers and matchers of a configuration.
+ *
+ * By default, the pac4j components are initialized lazily on the first request (OIDC discovery, SAML metadata parsing...).
+ * Calling {@link #initialize(Config)} before starting the Undertow server moves this work (and its failures)
+ * to the startup.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class ConfigInitializer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigInitializer.class);
+
+    private ConfigInitializer() {}
+
+    /**
+     * Initialize in parallel all the clients, authorizers and matchers of the configuration.
+     *
+     * @param config the configuration
+     * @return the initialization duration of each component
+     * @throws TechnicalException if at least one component fails to initialize
+     */
+    public static Map<String, Duration> initialize(final Config config) {
+        FrameworkAdapter.INSTANCE.applyDefaultSettingsIfUndefined(config);
+
+        final Map<String, InitializableObject> components = new LinkedHashMap<>();
+        if (config.getClients() != null) {
+            config.getClients().init();
+            for (final Client client : config.getClients().getClients()) {
+                if (client instanceof InitializableObject initializable) {
+                    components.put("client:" + client.getName(), initializable);
+                }
+            }
+        }
+        if (config.getAuthorizers() != null) {
+            config.getAuthorizers().forEach((name, authorizer) -> {
+                if (authorizer instanceof InitializableObject initializable) {
+                    components.put("authorizer:" + name, initializable);
+                }
+            });
+        }
+        if (config.getMatchers() != null) {
+            config.getMatchers().forEach((name, matcher) -> {
+                if (matcher instanceof InitializableObject initializable) {
+                    components.put("matcher:" + name, initializable);
+                }
+            });
+        }
+        if (components.isEmpty()) {
+            return Map.of();
+        }
+
+        final Map<String, Duration> timings = new ConcurrentHashMap<>();
+        final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(components.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>(components.size());
+            components.forEach((name, component) -> futures.add(CompletableFuture.runAsync(() -> {
+                final long start = System.nanoTime();
+                try {
+                    component.init();
+                } catch (final RuntimeException e) {
+                    failures.put(name, e);
+                } finally {
+                    timings.put(name, Duration.ofNanos(System.nanoTime() - start));
+                }
+            }, executor)));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (final CompletionException e) {
+            throw new TechnicalException("Cannot initialize the pac4j configuration", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        timings.forEach((name, duration) -> LOGGER.info("Initialized {} in {} ms", name, duration.toMillis()));
+        if (!failures.isEmpty()) {
+            final TechnicalException exception = new TechnicalException("Cannot initialize: " + failures.keySet());
+            failures.forEach((name, failure) -> {
+                LOGGER.error("Cannot initialize {}", name, failure);
+                exception.addSuppressed(failure);
+            });
+            throw exception;
+        }
+        return Map.copyOf(timings);
+    }
+}
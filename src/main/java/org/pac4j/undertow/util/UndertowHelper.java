@@ -7,6 +7,8 @@ import io.undertow.server.HttpServerExchange;
 import org.pac4j.core.profile.UserProfile;
 import org.pac4j.undertow.account.Pac4jAccount;
 import org.pac4j.undertow.context.UndertowWebContext;
+import org.pac4j.undertow.profile.EncodedProfiles;
+import org.pac4j.undertow.profile.ProfileCodec;
 
 import java.util.LinkedHashMap;
 
@@ -26,13 +28,30 @@ public class UndertowHelper {
      */
     public static void populateContext(final UndertowWebContext context, final LinkedHashMap<String, UserProfile> profiles) {
         if (profiles != null && !profiles.isEmpty()) {
-            final HttpServerExchange exchange = context.getExchange();
-            SecurityContext securityContext = exchange.getSecurityContext();
-            if (securityContext == null) {
-                securityContext = SecurityContextFactoryImpl.INSTANCE.createSecurityContext(exchange, AuthenticationMode.PRO_ACTIVE, null, null);
-            }
-            securityContext.authenticationComplete(new Pac4jAccount(profiles), "PAC4J_ACCOUNT", false);
-            exchange.setSecurityContext(securityContext);
+            populateContext(context.getExchange(), new Pac4jAccount(profiles));
         }
     }
+
+    /**
+     * Populate the security context with the encoded user profiles, without decoding them.
+     *
+     * @param exchange the Undertow exchange
+     * @param encodedProfiles the encoded profiles
+     * @param profileCodec the codec used to encode the profiles
+     * @return the account
+     */
+    public static Pac4jAccount populateContext(final HttpServerExchange exchange, final EncodedProfiles encodedProfiles, final ProfileCodec profileCodec) {
+        final Pac4jAccount account = new Pac4jAccount(encodedProfiles, profileCodec);
+        populateContext(exchange, account);
+        return account;
+    }
+
+    private static void populateContext(final HttpServerExchange exchange, final Pac4jAccount account) {
+        SecurityContext securityContext = exchange.getSecurityContext();
+        if (securityContext == null) {
+            securityContext = SecurityContextFactoryImpl.INSTANCE.createSecurityContext(exchange, AuthenticationMode.PRO_ACTIVE, null, null);
+        }
+        securityContext.authenticationComplete(account, "PAC4J_ACCOUNT", false);
+        exchange.setSecurityContext(securityContext);
+    }
 }
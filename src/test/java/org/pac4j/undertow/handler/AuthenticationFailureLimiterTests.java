@@ -0,0 +1,136 @@
+package org.pac4j.undertow.handler;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.exception.TechnicalException;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link AuthenticationFailureLimiter}.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class AuthenticationFailureLimiterTests {
+
+    private static final int WIDTH = 1 << 12;
+
+    private static final int MAX_FAILURES = 3;
+
+    private static HttpServerExchange exchange(final byte[] address, final String username) throws UnknownHostException {
+        final HttpServerExchange exchange = new HttpServerExchange(null);
+        exchange.setSourceAddress(new InetSocketAddress(InetAddress.getByAddress(address), 12345));
+        if (username != null) {
+            exchange.getRequestHeaders().put(Headers.AUTHORIZATION, "Basic");
+            exchange.addQueryParam("username", username);
+        }
+        return exchange;
+    }
+
+    private static byte[] ipv4(final int last) {
+        return new byte[] {10, 0, 0, (byte) last};
+    }
+
+    private static byte[] ipv6(final int network, final int host) {
+        final byte[] address = new byte[16];
+        address[0] = 0x20;
+        address[1] = 0x01;
+        address[7] = (byte) network;
+        address[15] = (byte) host;
+        return address;
+    }
+
+    private static AuthenticationFailureLimiter limiter(final Duration decayPeriod) {
+        final AuthenticationFailureLimiter limiter = new AuthenticationFailureLimiter(WIDTH, MAX_FAILURES, decayPeriod);
+        limiter.setCredentialIdentifier(exchange -> {
+            final Deque<String> values = exchange.getQueryParameters().get("username");
+            return values != null ? values.peekFirst() : null;
+        });
+        return limiter;
+    }
+
+    private static void fail(final AuthenticationFailureLimiter limiter, final HttpServerExchange exchange, final int times) {
+        for (int i = 0; i < times; i++) {
+            limiter.recordFailure(exchange);
+        }
+    }
+
+    @Test
+    public void testLimitReachedThenDecayed() throws Exception {
+        final AuthenticationFailureLimiter limiter = limiter(Duration.ofMillis(100));
+        final HttpServerExchange exchange = exchange(ipv4(1), null);
+        fail(limiter, exchange, MAX_FAILURES - 1);
+        assertFalse(limiter.isLimited(exchange));
+        limiter.recordFailure(exchange);
+        assertTrue(limiter.isLimited(exchange));
+
+        Thread.sleep(350);
+        assertFalse(limiter.isLimited(exchange));
+    }
+
+    @Test
+    public void testCountsAreSeparatedPerAddress() throws Exception {
+        final AuthenticationFailureLimiter limiter = limiter(Duration.ofHours(1));
+        fail(limiter, exchange(ipv4(1), null), MAX_FAILURES);
+        assertTrue(limiter.isLimited(exchange(ipv4(1), null)));
+        assertFalse(limiter.isLimited(exchange(ipv4(2), null)));
+    }
+
+    @Test
+    public void testIpv6CountedPerNetwork() throws Exception {
+        final AuthenticationFailureLimiter limiter = limiter(Duration.ofHours(1));
+        for (int host = 1; host <= MAX_FAILURES; host++) {
+            limiter.recordFailure(exchange(ipv6(1, host), null));
+        }
+        assertTrue(limiter.isLimited(exchange(ipv6(1, 200), null)));
+        assertFalse(limiter.isLimited(exchange(ipv6(2, 1), null)));
+    }
+
+    @Test
+    public void testCredentialLimitedFromAnyAddress() throws Exception {
+        final AuthenticationFailureLimiter limiter = limiter(Duration.ofHours(1));
+        for (int i = 1; i <= MAX_FAILURES; i++) {
+            limiter.recordFailure(exchange(ipv4(i), "alice"));
+        }
+        assertTrue(limiter.isLimited(exchange(ipv4(100), "alice")));
+        assertFalse(limiter.isLimited(exchange(ipv4(100), "bob")));
+        assertFalse(limiter.isLimited(exchange(ipv4(100), null)));
+    }
+
+    @Test
+    public void testCredentialsDoNotCountForAddresses() throws Exception {
+        final AuthenticationFailureLimiter limiter = limiter(Duration.ofHours(1));
+        final HttpServerExchange attacker = exchange(ipv4(1), null);
+        for (int i = 0; i < 1000; i++) {
+            attacker.getQueryParameters().clear();
+            attacker.addQueryParam("username", "user" + i);
+            limiter.recordFailure(attacker);
+        }
+        for (int last = 2; last < 255; last++) {
+            assertFalse(limiter.isLimited(exchange(ipv4(last), null)));
+        }
+    }
+
+    @Test
+    public void testHasCredentials() throws Exception {
+        final AuthenticationFailureLimiter limiter = limiter(Duration.ofHours(1));
+        assertTrue(limiter.hasCredentials(exchange(ipv4(1), "alice")));
+        assertFalse(limiter.hasCredentials(exchange(ipv4(1), null)));
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(TechnicalException.class, () -> new AuthenticationFailureLimiter(0, MAX_FAILURES, Duration.ofMinutes(1)));
+        assertThrows(TechnicalException.class, () -> new AuthenticationFailureLimiter(WIDTH, 0, Duration.ofMinutes(1)));
+        assertThrows(TechnicalException.class, () -> new AuthenticationFailureLimiter(WIDTH, MAX_FAILURES, Duration.ZERO));
+        assertThrows(TechnicalException.class, () -> new AuthenticationFailureLimiter(WIDTH, MAX_FAILURES, null));
+    }
+}
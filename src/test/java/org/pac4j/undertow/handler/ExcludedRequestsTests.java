@@ -0,0 +1,92 @@
+package org.pac4j.undertow.handler;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Methods;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ExcludedRequests}.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class ExcludedRequestsTests {
+
+    private static HttpServerExchange exchange(final String method, final String path) {
+        final HttpServerExchange exchange = new HttpServerExchange(null);
+        exchange.setRequestMethod(Methods.fromString(method));
+        exchange.setRequestPath(path);
+        exchange.setRelativePath(path);
+        return exchange;
+    }
+
+    private static boolean matches(final ExcludedRequests excludedRequests, final String path) {
+        return excludedRequests.matches(exchange("GET", path));
+    }
+
+    @Test
+    public void testPathPrefix() {
+        final ExcludedRequests excludedRequests = new ExcludedRequests().pathPrefix("/static");
+        assertTrue(matches(excludedRequests, "/static"));
+        assertTrue(matches(excludedRequests, "/static/"));
+        assertTrue(matches(excludedRequests, "/static/css/app.css"));
+        assertFalse(matches(excludedRequests, "/admin"));
+        assertFalse(matches(excludedRequests, "/"));
+    }
+
+    @Test
+    public void testPathPrefixMatchesFullSegments() {
+        final ExcludedRequests excludedRequests = new ExcludedRequests().pathPrefix("/healthz/");
+        assertTrue(matches(excludedRequests, "/healthz"));
+        assertTrue(matches(excludedRequests, "/healthz/live"));
+        assertFalse(matches(excludedRequests, "/healthz-admin"));
+        assertFalse(matches(excludedRequests, "/healthzz/live"));
+    }
+
+    @Test
+    public void testPathPrefixIsCanonicalized() {
+        final ExcludedRequests excludedRequests = new ExcludedRequests().pathPrefix("public/../static");
+        assertTrue(matches(excludedRequests, "/static/x"));
+        assertFalse(matches(excludedRequests, "/public/x"));
+    }
+
+    @Test
+    public void testTraversalOutOfExcludedPrefixIsNotExcluded() {
+        final ExcludedRequests excludedRequests = new ExcludedRequests().pathPrefix("/static");
+        assertFalse(matches(excludedRequests, "/static/../admin"));
+        assertFalse(matches(excludedRequests, "/static/../admin/users"));
+    }
+
+    @Test
+    public void testTraversalIntoExcludedPrefixIsNotExcluded() {
+        final ExcludedRequests excludedRequests = new ExcludedRequests().pathPrefix("/static");
+        assertFalse(matches(excludedRequests, "/admin/../static/x"));
+        assertFalse(matches(excludedRequests, "/admin/./../static"));
+        assertFalse(matches(excludedRequests, "/static/./x"));
+    }
+
+    @Test
+    public void testExtension() {
+        final ExcludedRequests excludedRequests = new ExcludedRequests().extension("css").extension(".js");
+        assertTrue(matches(excludedRequests, "/app.css"));
+        assertTrue(matches(excludedRequests, "/assets/app.js"));
+        assertFalse(matches(excludedRequests, "/app.css/admin"));
+        assertFalse(matches(excludedRequests, "/appcss"));
+        assertFalse(matches(excludedRequests, "/admin/../app.css"));
+        assertFalse(matches(excludedRequests, "/app.css/.."));
+    }
+
+    @Test
+    public void testMethod() {
+        final ExcludedRequests excludedRequests = new ExcludedRequests().method("OPTIONS");
+        assertTrue(excludedRequests.matches(exchange("OPTIONS", "/admin")));
+        assertFalse(excludedRequests.matches(exchange("GET", "/admin")));
+    }
+
+    @Test
+    public void testNoRules() {
+        assertFalse(matches(new ExcludedRequests(), "/static/x"));
+    }
+}
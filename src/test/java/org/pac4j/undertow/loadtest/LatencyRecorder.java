@@ -0,0 +1,80 @@
+package org.pac4j.undertow.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency samples per step of the load test.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+final class LatencyRecorder {
+
+    private final Map<String, ConcurrentLinkedQueue<Long>> samples = new ConcurrentHashMap<>();
+
+    private final List<String> steps = new ArrayList<>();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    LatencyRecorder(final String... steps) {
+        for (final String step : steps) {
+            this.steps.add(step);
+            samples.put(step, new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    void record(final String step, final long nanos) {
+        samples.get(step).add(nanos);
+    }
+
+    void error() {
+        errors.incrementAndGet();
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    long count(final String step) {
+        return samples.get(step).size();
+    }
+
+    long totalCount() {
+        long count = 0;
+        for (final String step : steps) {
+            count += count(step);
+        }
+        return count;
+    }
+
+    /**
+     * Format the latency percentiles of each step, in milliseconds.
+     *
+     * @return the report
+     */
+    String report() {
+        final StringBuilder report = new StringBuilder(String.format("%-20s %8s %8s %8s %8s %8s%n", "step (ms)", "count", "p50", "p90",
+            "p99", "max"));
+        for (final String step : steps) {
+            final long[] values = samples.get(step).stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(values);
+            report.append(String.format("%-20s %8d %8.2f %8.2f %8.2f %8.2f%n", step, values.length, percentile(values, 50),
+                percentile(values, 90), percentile(values, 99), values.length > 0 ? values[values.length - 1] / 1e6 : 0d));
+        }
+        return report.toString();
+    }
+
+    private static double percentile(final long[] sorted, final int percentile) {
+        if (sorted.length == 0) {
+            return 0d;
+        }
+        final int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
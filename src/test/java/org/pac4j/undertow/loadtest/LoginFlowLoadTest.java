@@ -0,0 +1,273 @@
+package org.pac4j.undertow.loadtest;
+
+import io.undertow.Undertow;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.server.session.InMemorySessionManager;
+import io.undertow.server.session.SessionAttachmentHandler;
+import io.undertow.server.session.SessionCookieConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.config.Config;
+import org.pac4j.oauth.client.GenericOAuth20Client;
+import org.pac4j.undertow.context.UndertowSessionIndex;
+import org.pac4j.undertow.context.UndertowSessionLogoutHandler;
+import org.pac4j.undertow.context.UndertowSessionStoreFactory;
+import org.pac4j.undertow.handler.CallbackHandler;
+import org.pac4j.undertow.handler.LogoutHandler;
+import org.pac4j.undertow.handler.SecurityHandler;
+import org.pac4j.undertow.util.ConfigInitializer;
+import org.xnio.Options;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.CookieManager;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test of the full login flow: {@link SecurityHandler} &rarr; identity provider redirect &rarr; {@link CallbackHandler}
+ * &rarr; protected resource &rarr; {@link LogoutHandler}, on an embedded Undertow server and a {@link StubOAuthProvider}.
+ *
+ * It reports the throughput, the latency percentiles per step, the allocation of the server threads and the session counts.
+ * It only runs with the <code>load-test</code> profile: <code>mvn test -Pload-test -Dloadtest.users=100 -Dloadtest.iterations=50</code>.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+@Tag("load")
+public final class LoginFlowLoadTest {
+
+    private static final String SERVER_WORKER = "loadtest-server";
+
+    private static final String STEP_REDIRECT = "secure-redirect";
+    private static final String STEP_AUTHORIZE = "idp-authorize";
+    private static final String STEP_CALLBACK = "callback";
+    private static final String STEP_FIRST_ACCESS = "first-access";
+    private static final String STEP_ACCESS = "access";
+    private static final String STEP_LOGOUT = "logout";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final int users = Integer.getInteger("loadtest.users", 50);
+
+    private final int iterations = Integer.getInteger("loadtest.iterations", 20);
+
+    private final int warmupIterations = Integer.getInteger("loadtest.warmup", 5);
+
+    private final int accessesPerLogin = Integer.getInteger("loadtest.accesses", 5);
+
+    private StubOAuthProvider provider;
+
+    private InMemorySessionManager sessionManager;
+
+    private Undertow server;
+
+    private String serverUrl;
+
+    @BeforeEach
+    public void start() {
+        provider = new StubOAuthProvider();
+        provider.start();
+
+        final PathHandler paths = new PathHandler();
+        sessionManager = new InMemorySessionManager("loadtest", -1, true);
+        server = Undertow.builder()
+            .addHttpListener(0, StubOAuthProvider.LOOPBACK)
+            .setWorkerOption(Options.WORKER_NAME, SERVER_WORKER)
+            .setHandler(new SessionAttachmentHandler(paths, sessionManager, new SessionCookieConfig()))
+            .build();
+        server.start();
+        serverUrl = StubOAuthProvider.loopbackUrl(((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort());
+
+        final GenericOAuth20Client client = new GenericOAuth20Client();
+        client.setKey("loadtest");
+        client.setSecret("secret");
+        client.setAuthUrl(provider.getUrl() + "/authorize");
+        client.setTokenUrl(provider.getUrl() + "/token");
+        client.setProfileUrl(provider.getUrl() + "/profile");
+        client.setProfileId("id");
+        final Config config = new Config(new Clients(serverUrl + "/callback", client));
+        final UndertowSessionIndex sessionIndex = UndertowSessionIndex.register(sessionManager);
+        final UndertowSessionStoreFactory sessionStoreFactory = new UndertowSessionStoreFactory();
+        sessionStoreFactory.setSessionIndex(sessionIndex);
+        config.setSessionStoreFactory(sessionStoreFactory);
+        config.setSessionLogoutHandler(new UndertowSessionLogoutHandler(sessionIndex));
+        // the lazy initialization of the clients is not meant to be raced by the concurrent first requests
+        ConfigInitializer.initialize(config);
+
+        final LogoutHandler logoutHandler = new LogoutHandler(config, "/loggedOut");
+        logoutHandler.setDestroySession(true);
+        paths.addExactPath("/protected", SecurityHandler.build(exchange -> exchange.getResponseSender().send("protected"), config,
+                "GenericOAuth20Client"))
+            .addExactPath("/callback", CallbackHandler.build(config, "/protected"))
+            .addExactPath("/logout", new BlockingHandler(logoutHandler))
+            .addExactPath("/loggedOut", exchange -> exchange.getResponseSender().send("logged out"));
+    }
+
+    @AfterEach
+    public void stop() {
+        if (server != null) {
+            server.stop();
+        }
+        if (provider != null) {
+            provider.stop();
+        }
+    }
+
+    @Test
+    public void testLoginFlows() throws Exception {
+        runPhase(warmupIterations, new LatencyRecorder(STEP_REDIRECT, STEP_AUTHORIZE, STEP_CALLBACK, STEP_FIRST_ACCESS, STEP_ACCESS,
+            STEP_LOGOUT));
+
+        final LatencyRecorder recorder = new LatencyRecorder(STEP_REDIRECT, STEP_AUTHORIZE, STEP_CALLBACK, STEP_FIRST_ACCESS,
+            STEP_ACCESS, STEP_LOGOUT);
+        final long createdBefore = sessionManager.getCreatedSessionCount();
+        final long allocatedBefore = serverAllocatedBytes();
+        final long start = System.nanoTime();
+        final int maxActiveSessions = runPhase(iterations, recorder);
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        final long allocated = serverAllocatedBytes() - allocatedBefore;
+
+        final long flows = recorder.count(STEP_LOGOUT);
+        final long requests = recorder.totalCount();
+        final StringBuilder report = new StringBuilder()
+            .append(String.format("%n%d users x %d login flows in %.2f s%n", users, iterations, elapsedSeconds))
+            .append(String.format("throughput: %.1f requests/s, %.1f login flows/s, %d errors%n", requests / elapsedSeconds,
+                flows / elapsedSeconds, recorder.getErrors()))
+            .append(recorder.report())
+            .append(String.format("server allocation: %.1f MB/s, %d KB per login flow%n", allocated / elapsedSeconds / 1e6,
+                flows > 0 ? allocated / flows / 1024 : 0))
+            .append(String.format("sessions: %d created, %d max active (sampled), %d active at the end%n",
+                sessionManager.getCreatedSessionCount() - createdBefore, maxActiveSessions, sessionManager.getActiveSessions().size()))
+            .append(String.format("identity provider requests: %d%n", provider.getRequests()));
+        System.out.println(report);
+
+        assertEquals(0, recorder.getErrors());
+        assertEquals((long) users * iterations, flows);
+    }
+
+    /**
+     * Run the login flows of all the users concurrently.
+     *
+     * @param nbIterations the number of login flows per user
+     * @param recorder the latency recorder
+     * @return the maximum number of active sessions sampled during the phase
+     */
+    private int runPhase(final int nbIterations, final LatencyRecorder recorder) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(users);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicInteger maxActiveSessions = new AtomicInteger();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                futures.add(executor.submit(() -> {
+                    final HttpClient httpClient = HttpClient.newBuilder()
+                        .cookieHandler(new CookieManager())
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .connectTimeout(TIMEOUT)
+                        .build();
+                    startSignal.await();
+                    for (int j = 0; j < nbIterations; j++) {
+                        loginFlow(httpClient, recorder);
+                        maxActiveSessions.accumulateAndGet(sessionManager.getActiveSessions().size(), Math::max);
+                    }
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        }
+        return maxActiveSessions.get();
+    }
+
+    private void loginFlow(final HttpClient httpClient, final LatencyRecorder recorder) throws IOException, InterruptedException {
+        final HttpResponse<String> redirect = send(httpClient, serverUrl + "/protected", STEP_REDIRECT, recorder);
+        if (!expect(redirect, 302, recorder)) {
+            return;
+        }
+        final HttpResponse<String> authorize = send(httpClient, location(redirect), STEP_AUTHORIZE, recorder);
+        if (!expect(authorize, 302, recorder)) {
+            return;
+        }
+        final HttpResponse<String> callback = send(httpClient, location(authorize), STEP_CALLBACK, recorder);
+        if (!expect(callback, 302, recorder)) {
+            return;
+        }
+        final HttpResponse<String> firstAccess = send(httpClient, location(callback), STEP_FIRST_ACCESS, recorder);
+        if (!expect(firstAccess, 200, recorder)) {
+            return;
+        }
+        for (int i = 0; i < accessesPerLogin; i++) {
+            if (!expect(send(httpClient, serverUrl + "/protected", STEP_ACCESS, recorder), 200, recorder)) {
+                return;
+            }
+        }
+        final HttpResponse<String> logout = send(httpClient, serverUrl + "/logout", STEP_LOGOUT, recorder);
+        expect(logout, 302, recorder);
+    }
+
+    private static HttpResponse<String> send(final HttpClient httpClient, final String url, final String step,
+                                             final LatencyRecorder recorder) throws IOException, InterruptedException {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).GET().build();
+        final long start = System.nanoTime();
+        final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        recorder.record(step, System.nanoTime() - start);
+        return response;
+    }
+
+    private static boolean expect(final HttpResponse<String> response, final int status, final LatencyRecorder recorder) {
+        if (response.statusCode() != status) {
+            recorder.error();
+            return false;
+        }
+        return true;
+    }
+
+    private String location(final HttpResponse<String> response) {
+        final String location = response.headers().firstValue("Location").orElseThrow();
+        return location.startsWith("/") ? serverUrl + location : location;
+    }
+
+    /**
+     * Sum the bytes allocated by the threads of the server worker (I/O and task threads).
+     *
+     * @return the allocated bytes
+     */
+    private static long serverAllocatedBytes() {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (final ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(SERVER_WORKER)) {
+                final long allocated = threads.getThreadAllocatedBytes(info.getThreadId());
+                if (allocated > 0) {
+                    total += allocated;
+                }
+            }
+        }
+        return total;
+    }
+}
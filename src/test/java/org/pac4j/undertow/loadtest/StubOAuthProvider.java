@@ -0,0 +1,151 @@
+package org.pac4j.undertow.loadtest;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.xnio.Options;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal OAuth 2.0 provider on the loopback interface: it authorizes every request without any login page.
+ *
+ * <ul>
+ * <li><code>/authorize</code> redirects to the <code>redirect_uri</code> with a new code (one new user per authorization)
+ * and the received state;</li>
+ * <li><code>/token</code> exchanges the code for an access token;</li>
+ * <li><code>/profile</code> returns the identifier of the user of the access token.</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class StubOAuthProvider {
+
+    /** Address of the loopback interface, on which the servers of the load test listen */
+    static final String LOOPBACK = InetAddress.getLoopbackAddress().getHostAddress();
+
+    private final AtomicLong users = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final Undertow server;
+
+    public StubOAuthProvider() {
+        final PathHandler paths = new PathHandler()
+            .addExactPath("/authorize", this::authorize)
+            .addExactPath("/token", this::token)
+            .addExactPath("/profile", this::profile);
+        server = Undertow.builder()
+            .addHttpListener(0, LOOPBACK)
+            .setIoThreads(2)
+            .setWorkerOption(Options.WORKER_NAME, "stub-idp")
+            .setHandler(exchange -> {
+                requests.incrementAndGet();
+                paths.handleRequest(exchange);
+            })
+            .build();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop();
+    }
+
+    public String getUrl() {
+        final InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get(0).getAddress();
+        return loopbackUrl(address.getPort());
+    }
+
+    /**
+     * Build the base URL of a server listening on the loopback interface.
+     *
+     * @param port the server port
+     * @return the base URL
+     */
+    static String loopbackUrl(final int port) {
+        return "http://" + (LOOPBACK.indexOf(':') >= 0 ? "[" + LOOPBACK + "]" : LOOPBACK) + ":" + port;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private void authorize(final HttpServerExchange exchange) {
+        final String redirectUri = parameter(exchange, "redirect_uri");
+        if (redirectUri == null) {
+            exchange.setStatusCode(StatusCodes.BAD_REQUEST);
+            exchange.endExchange();
+            return;
+        }
+        final StringBuilder location = new StringBuilder(redirectUri)
+            .append(redirectUri.indexOf('?') >= 0 ? '&' : '?')
+            .append("code=code-").append(users.incrementAndGet());
+        final String state = parameter(exchange, "state");
+        if (state != null) {
+            location.append("&state=").append(URLEncoder.encode(state, StandardCharsets.UTF_8));
+        }
+        exchange.setStatusCode(StatusCodes.FOUND);
+        exchange.getResponseHeaders().put(Headers.LOCATION, location.toString());
+        exchange.endExchange();
+    }
+
+    private void token(final HttpServerExchange exchange) {
+        exchange.getRequestReceiver().receiveFullString((ex, body) -> {
+            final String code = formParameter(body, "code");
+            if (code == null || !code.startsWith("code-")) {
+                ex.setStatusCode(StatusCodes.BAD_REQUEST);
+                ex.endExchange();
+                return;
+            }
+            final String user = code.substring("code-".length());
+            json(ex, "{\"access_token\":\"token-" + user + "\",\"token_type\":\"bearer\",\"expires_in\":3600}");
+        }, StandardCharsets.UTF_8);
+    }
+
+    private void profile(final HttpServerExchange exchange) {
+        String token = parameter(exchange, "access_token");
+        final String authorization = exchange.getRequestHeaders().getFirst(Headers.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            token = authorization.substring("Bearer ".length());
+        }
+        if (token == null || !token.startsWith("token-")) {
+            exchange.setStatusCode(StatusCodes.UNAUTHORIZED);
+            exchange.endExchange();
+            return;
+        }
+        final String user = token.substring("token-".length());
+        json(exchange, "{\"id\":\"user-" + user + "\",\"email\":\"user-" + user + "@example.org\",\"name\":\"User " + user + "\"}");
+    }
+
+    private static void json(final HttpServerExchange exchange, final String body) {
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send(body);
+    }
+
+    private static String parameter(final HttpServerExchange exchange, final String name) {
+        final Deque<String> values = exchange.getQueryParameters().get(name);
+        return values != null ? values.peekFirst() : null;
+    }
+
+    private static String formParameter(final String body, final String name) {
+        for (final String pair : body.split("&")) {
+            final int separator = pair.indexOf('=');
+            if (separator > 0 && name.equals(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8))) {
+                return URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
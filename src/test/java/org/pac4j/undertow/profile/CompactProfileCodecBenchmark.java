@@ -0,0 +1,247 @@
+package org.pac4j.undertow.profile;
+
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import org.pac4j.core.profile.BasicUserProfile;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.UserProfile;
+import org.pac4j.oidc.profile.OidcProfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compares the {@link CompactProfileCodec} with the Java serialization of the profiles map (the default session storage):
+ * payload size and encoding / decoding time, for a minimal profile, a typical OIDC profile (claims and tokens) and
+ * a typical SAML profile (multi-valued attributes).
+ *
+ * The SAML profile is a {@link CommonProfile} with the attributes and authentication attributes of a
+ * <code>SAML2Profile</code>, as pac4j-saml depends on the OpenSAML artifacts which are not available on Maven Central.
+ *
+ * Run it with: <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.pac4j.undertow.profile.CompactProfileCodecBenchmark</code>
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class CompactProfileCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10_000;
+
+    private static final int ITERATIONS = 20_000;
+
+    private static final List<String> OIDC_CLAIMS = List.of("iss", "aud", "exp", "iat", "auth_time", "nonce", "acr", "amr",
+        "azp", "sid", "at_hash", "name", "given_name", "family_name", "middle_name", "nickname", "preferred_username",
+        "profile", "picture", "website", "email", "email_verified", "gender", "birthdate", "zoneinfo", "locale",
+        "phone_number", "phone_number_verified", "updated_at", "groups", "access_token", "id_token", "refresh_token",
+        "expiration", "token_expiration_advance");
+
+    private static final List<String> SAML_ATTRIBUTES = List.of("urn:oid:0.9.2342.19200300.100.1.1",
+        "urn:oid:0.9.2342.19200300.100.1.3", "urn:oid:2.5.4.42", "urn:oid:2.5.4.4", "urn:oid:2.16.840.1.113730.3.1.241",
+        "urn:oid:1.3.6.1.4.1.5923.1.1.1.7", "urn:oid:1.3.6.1.4.1.5923.1.1.1.1", "urn:oid:1.3.6.1.4.1.5923.1.1.1.9",
+        "urn:oid:1.3.6.1.4.1.5923.1.1.1.6", "urn:oid:1.3.6.1.4.1.5923.1.1.1.10", "urn:oid:2.5.4.10", "urn:oid:2.5.4.11",
+        "urn:oid:2.5.4.12", "urn:oid:2.5.4.20", "urn:oid:2.5.4.3", "urn:oid:1.3.6.1.4.1.5923.1.1.1.5",
+        "sessionindex", "samlIssuerId", "samlAuthnContext", "samlNameIdFormat", "notBefore", "notOnOrAfter");
+
+    private CompactProfileCodecBenchmark() {}
+
+    public static void main(final String[] args) {
+        benchmark("minimal", minimalProfiles(), List.of("email", "given_name", "family_name"));
+        benchmark("OIDC", oidcProfiles(), OIDC_CLAIMS);
+        benchmark("SAML", samlProfiles(), SAML_ATTRIBUTES);
+    }
+
+    private static void benchmark(final String fixture, final LinkedHashMap<String, UserProfile> profiles,
+                                  final List<String> knownAttributes) {
+        final CompactProfileCodec compact = new CompactProfileCodec();
+        final CompactProfileCodec dictionary = new CompactProfileCodec(knownAttributes);
+        final CompactProfileCodec compressed = new CompactProfileCodec();
+        compressed.setCompress(true);
+        compressed.setCompressionThreshold(0);
+
+        System.out.printf("%s profile: %d attributes, %d authentication attributes%n", fixture,
+            profiles.values().iterator().next().getAttributes().size(),
+            ((BasicUserProfile) profiles.values().iterator().next()).getAuthenticationAttributes().size());
+        run("java serialization", profiles, CompactProfileCodecBenchmark::serialize, CompactProfileCodecBenchmark::deserialize);
+        run("compact", profiles, compact::encode, compact::decode);
+        run("compact + dictionary", profiles, dictionary::encode, dictionary::decode);
+        run("compact + compression", profiles, compressed::encode, compressed::decode);
+    }
+
+    private static LinkedHashMap<String, UserProfile> minimalProfiles() {
+        final CommonProfile profile = new CommonProfile();
+        profile.setId("jdoe");
+        profile.setClientName("FormClient");
+        profile.addRole("ROLE_USER");
+        profile.addAttribute("email", "jane.doe@example.org");
+        profile.addAttribute("given_name", "Jane");
+        profile.addAttribute("family_name", "Doe");
+        final LinkedHashMap<String, UserProfile> profiles = new LinkedHashMap<>();
+        profiles.put("FormClient", profile);
+        return profiles;
+    }
+
+    private static LinkedHashMap<String, UserProfile> oidcProfiles() {
+        final OidcProfile profile = new OidcProfile();
+        profile.setId("00u1a2b3c4d5e6f7g8h9");
+        profile.setClientName("OidcClient");
+        profile.addRoles(List.of("ROLE_USER", "ROLE_ADMIN"));
+        profile.addAttribute("iss", "https://login.example.org/oauth2/default");
+        profile.addAttribute("aud", new ArrayList<>(List.of("0oa1b2c3d4e5f6g7h8i9")));
+        profile.addAttribute("exp", new Date(1_700_003_600_000L));
+        profile.addAttribute("iat", new Date(1_700_000_000_000L));
+        profile.addAttribute("auth_time", new Date(1_699_999_990_000L));
+        profile.addAttribute("nonce", "n-0S6_WzA2Mj");
+        profile.addAttribute("acr", "urn:mace:incommon:iap:silver");
+        profile.addAttribute("amr", new ArrayList<>(List.of("pwd", "mfa", "otp")));
+        profile.addAttribute("azp", "0oa1b2c3d4e5f6g7h8i9");
+        profile.addAttribute("sid", "08a5019c-17e1-4977-8f42-65a12843ea02");
+        profile.addAttribute("at_hash", "77QmUPtjPfzWtF2AnpK9RQ");
+        profile.addAttribute("name", "Jane Q. Doe");
+        profile.addAttribute("given_name", "Jane");
+        profile.addAttribute("family_name", "Doe");
+        profile.addAttribute("middle_name", "Quinn");
+        profile.addAttribute("nickname", "jd");
+        profile.addAttribute("preferred_username", "jane.doe@example.org");
+        profile.addAttribute("profile", "https://profiles.example.org/jane.doe");
+        profile.addAttribute("picture", "https://profiles.example.org/jane.doe/picture.jpg");
+        profile.addAttribute("website", "https://jane.example.org");
+        profile.addAttribute("email", "jane.doe@example.org");
+        profile.addAttribute("email_verified", Boolean.TRUE);
+        profile.addAttribute("gender", "female");
+        profile.addAttribute("birthdate", "1985-04-12");
+        profile.addAttribute("zoneinfo", "Europe/Paris");
+        profile.addAttribute("locale", "fr-FR");
+        profile.addAttribute("phone_number", "+33 1 23 45 67 89");
+        profile.addAttribute("phone_number_verified", Boolean.FALSE);
+        profile.addAttribute("updated_at", new Date(1_690_000_000_000L));
+        profile.addAttribute("groups", new ArrayList<>(List.of("engineering", "platform-team", "admins", "everyone",
+            "oncall", "security-reviewers", "release-managers", "vpn-users")));
+        profile.addAttribute("department", "Engineering");
+        profile.addAttribute("employee_number", "004242");
+        profile.addAttribute("tenant", "example-org");
+        profile.setAccessToken(new BearerAccessToken(token(870), 3600L, new Scope("openid", "profile", "email", "groups")));
+        profile.setIdTokenString(token(1024));
+        profile.setRefreshToken(new RefreshToken(token(64)));
+        profile.setExpiration(new Date(1_700_003_600_000L));
+        profile.setTokenExpirationAdvance(30);
+        final LinkedHashMap<String, UserProfile> profiles = new LinkedHashMap<>();
+        profiles.put("OidcClient", profile);
+        return profiles;
+    }
+
+    private static LinkedHashMap<String, UserProfile> samlProfiles() {
+        final CommonProfile profile = new CommonProfile();
+        profile.setId("jdoe@example.org");
+        profile.setClientName("SAML2Client");
+        profile.addRole("ROLE_USER");
+        profile.addAttribute("urn:oid:0.9.2342.19200300.100.1.1", values("jdoe"));
+        profile.addAttribute("urn:oid:0.9.2342.19200300.100.1.3", values("jane.doe@example.org", "jdoe@example.org"));
+        profile.addAttribute("urn:oid:2.5.4.42", values("Jane"));
+        profile.addAttribute("urn:oid:2.5.4.4", values("Doe"));
+        profile.addAttribute("urn:oid:2.16.840.1.113730.3.1.241", values("Jane Doe"));
+        profile.addAttribute("urn:oid:1.3.6.1.4.1.5923.1.1.1.7", values("urn:mace:example.org:entitlement:vpn",
+            "urn:mace:example.org:entitlement:wiki", "urn:mace:example.org:entitlement:git",
+            "urn:mace:example.org:entitlement:ci", "urn:mace:dir:entitlement:common-lib-terms"));
+        profile.addAttribute("urn:oid:1.3.6.1.4.1.5923.1.1.1.1", values("member", "staff", "employee"));
+        profile.addAttribute("urn:oid:1.3.6.1.4.1.5923.1.1.1.9", values("member@example.org", "staff@example.org",
+            "employee@example.org"));
+        profile.addAttribute("urn:oid:1.3.6.1.4.1.5923.1.1.1.6", values("jdoe@example.org"));
+        profile.addAttribute("urn:oid:1.3.6.1.4.1.5923.1.1.1.10", values("https://idp.example.org/idp/shibboleth!"
+            + "https://sp.example.org/shibboleth!" + token(44)));
+        profile.addAttribute("urn:oid:2.5.4.10", values("Example Organization"));
+        profile.addAttribute("urn:oid:2.5.4.11", values("Engineering", "Platform"));
+        profile.addAttribute("urn:oid:2.5.4.12", values("Staff Engineer"));
+        profile.addAttribute("urn:oid:2.5.4.20", values("+33 1 23 45 67 89"));
+        profile.addAttribute("urn:oid:2.5.4.3", values("Jane Doe"));
+        profile.addAttribute("urn:oid:1.3.6.1.4.1.5923.1.1.1.5", values("member"));
+        for (int i = 1; i <= 16; i++) {
+            profile.addAttribute("http://schemas.example.org/claims/custom-" + i, values("value-" + i, "other-" + i));
+        }
+        profile.addAttribute("memberOf", values("cn=engineering,ou=groups,dc=example,dc=org",
+            "cn=platform,ou=groups,dc=example,dc=org", "cn=vpn-users,ou=groups,dc=example,dc=org",
+            "cn=admins,ou=groups,dc=example,dc=org", "cn=everyone,ou=groups,dc=example,dc=org",
+            "cn=oncall,ou=groups,dc=example,dc=org", "cn=release,ou=groups,dc=example,dc=org",
+            "cn=security,ou=groups,dc=example,dc=org", "cn=wiki-editors,ou=groups,dc=example,dc=org",
+            "cn=ci-admins,ou=groups,dc=example,dc=org"));
+        profile.addAuthenticationAttribute("sessionindex", "_" + token(40));
+        profile.addAuthenticationAttribute("samlIssuerId", "https://idp.example.org/idp/shibboleth");
+        profile.addAuthenticationAttribute("samlAuthnContext",
+            values("urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport"));
+        profile.addAuthenticationAttribute("samlAuthnContextAuthorities", values("https://idp.example.org/idp/shibboleth"));
+        profile.addAuthenticationAttribute("samlNameIdFormat", "urn:oasis:names:tc:SAML:2.0:nameid-format:persistent");
+        profile.addAuthenticationAttribute("samlNameIdNameQualifier", "https://idp.example.org/idp/shibboleth");
+        profile.addAuthenticationAttribute("samlNameIdSpNameQualifier", "https://sp.example.org/shibboleth");
+        profile.addAuthenticationAttribute("notBefore", ZonedDateTime.of(2023, 11, 14, 22, 13, 20, 0, ZoneOffset.UTC));
+        profile.addAuthenticationAttribute("notOnOrAfter", ZonedDateTime.of(2023, 11, 14, 22, 18, 20, 0, ZoneOffset.UTC));
+        final LinkedHashMap<String, UserProfile> profiles = new LinkedHashMap<>();
+        profiles.put("SAML2Client", profile);
+        return profiles;
+    }
+
+    private static List<String> values(final String... values) {
+        return new ArrayList<>(List.of(values));
+    }
+
+    private static String token(final int length) {
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt((i * 31 + 7) % alphabet.length()));
+        }
+        return sb.toString();
+    }
+
+    private static void run(final String name, final LinkedHashMap<String, UserProfile> profiles,
+                            final Function<Map<String, UserProfile>, byte[]> encoder,
+                            final Function<byte[], Map<String, UserProfile>> decoder) {
+        final byte[] data = encoder.apply(profiles);
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            checksum += encoder.apply(profiles).length + decoder.apply(data).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += encoder.apply(profiles).length;
+        }
+        final long encodeNanos = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            checksum += decoder.apply(data).size();
+        }
+        final long decodeNanos = (System.nanoTime() - start) / ITERATIONS;
+        System.out.printf("%-24s %6d bytes  encode %7d ns  decode %7d ns  (%d)%n", name, data.length, encodeNanos,
+            decodeNanos, checksum);
+    }
+
+    private static byte[] serialize(final Map<String, UserProfile> profiles) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(new LinkedHashMap<>(profiles));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, UserProfile> deserialize(final byte[] data) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (Map<String, UserProfile>) ois.readObject();
+        } catch (final IOException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.pac4j.undertow.profile;
+
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.BasicUserProfile;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.UserProfile;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link CompactProfileCodec}.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class CompactProfileCodecTests {
+
+    private static final String KEY1 = "FormClient";
+    private static final String KEY2 = "SAML2Client";
+
+    private static CommonProfile buildProfile(final String id, final String clientName) {
+        final CommonProfile profile = new CommonProfile();
+        profile.setId(id);
+        profile.setLinkedId("linked-" + id);
+        profile.setClientName(clientName);
+        profile.setRemembered(true);
+        profile.addRoles(List.of("ROLE_USER", "ROLE_ADMIN"));
+        profile.addAttribute("email", id + "@example.org");
+        profile.addAttribute("verified", Boolean.TRUE);
+        profile.addAttribute("age", 42);
+        profile.addAttribute("uid", 123_456_789_012L);
+        profile.addAttribute("score", 0.75d);
+        profile.addAuthenticationAttribute("sessionindex", "idx-" + id);
+        return profile;
+    }
+
+    private static Map<String, UserProfile> buildProfiles() {
+        final Map<String, UserProfile> profiles = new LinkedHashMap<>();
+        profiles.put(KEY1, buildProfile("alice", KEY1));
+        profiles.put(KEY2, buildProfile("alice-idp", KEY2));
+        return profiles;
+    }
+
+    private static void assertSameProfile(final UserProfile expected, final UserProfile actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getLinkedId(), actual.getLinkedId());
+        assertEquals(expected.getClientName(), actual.getClientName());
+        assertEquals(expected.isRemembered(), actual.isRemembered());
+        assertEquals(expected.getRoles(), actual.getRoles());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        if (expected instanceof BasicUserProfile basicProfile) {
+            assertEquals(basicProfile.getAuthenticationAttributes(), ((BasicUserProfile) actual).getAuthenticationAttributes());
+        }
+    }
+
+    private static void assertRoundTrip(final ProfileCodec codec, final Map<String, UserProfile> profiles) {
+        final LinkedHashMap<String, UserProfile> decoded = codec.decode(codec.encode(profiles));
+        assertEquals(new ArrayList<>(profiles.keySet()), new ArrayList<>(decoded.keySet()));
+        for (final Map.Entry<String, UserProfile> entry : profiles.entrySet()) {
+            assertSameProfile(entry.getValue(), decoded.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testMultipleProfiles() {
+        assertRoundTrip(new CompactProfileCodec(), buildProfiles());
+    }
+
+    @Test
+    public void testNoProfile() {
+        final CompactProfileCodec codec = new CompactProfileCodec();
+        assertTrue(codec.decode(codec.encode(new LinkedHashMap<>())).isEmpty());
+    }
+
+    @Test
+    public void testNullIdentifiers() {
+        final CommonProfile profile = new CommonProfile();
+        profile.addAttribute("nothing", null);
+        assertRoundTrip(new CompactProfileCodec(), Map.of(KEY1, profile));
+    }
+
+    @Test
+    public void testPresetDictionary() {
+        final CompactProfileCodec codec = new CompactProfileCodec(List.of("email", "verified", "age"));
+        final Map<String, UserProfile> profiles = buildProfiles();
+        assertRoundTrip(codec, profiles);
+        assertTrue(codec.encode(profiles).length < new CompactProfileCodec().encode(profiles).length);
+    }
+
+    @Test
+    public void testPresetDictionaryMustMatch() {
+        final CompactProfileCodec codec = new CompactProfileCodec(List.of("email"));
+        final LinkedHashMap<String, UserProfile> decoded =
+            new CompactProfileCodec(List.of("verified")).decode(codec.encode(buildProfiles()));
+        assertNotEquals(buildProfiles().get(KEY1).getAttributes(), decoded.get(KEY1).getAttributes());
+    }
+
+    @Test
+    public void testCompression() {
+        final CompactProfileCodec codec = new CompactProfileCodec();
+        codec.setCompress(true);
+        codec.setCompressionThreshold(0);
+        final Map<String, UserProfile> profiles = buildProfiles();
+        profiles.values().iterator().next().addAttribute("description", "lorem ipsum ".repeat(100));
+        assertRoundTrip(codec, profiles);
+        final CompactProfileCodec uncompressed = new CompactProfileCodec();
+        assertTrue(codec.encode(profiles).length < uncompressed.encode(profiles).length);
+        assertRoundTrip(uncompressed, profiles);
+    }
+
+    @Test
+    public void testCompressionBelowThreshold() {
+        final CompactProfileCodec codec = new CompactProfileCodec();
+        codec.setCompress(true);
+        codec.setCompressionThreshold(Integer.MAX_VALUE);
+        final Map<String, UserProfile> profiles = buildProfiles();
+        assertArrayEquals(new CompactProfileCodec().encode(profiles), codec.encode(profiles));
+        assertRoundTrip(codec, profiles);
+    }
+
+    @Test
+    public void testListsAndDates() {
+        final CommonProfile profile = buildProfile("bob", KEY1);
+        profile.addAttribute("groups", new ArrayList<>(List.of("admins", "users")));
+        profile.addAttribute("nested", new ArrayList<>(List.of(1, "two", new Date(3000L), new ArrayList<>(List.of(4L)))));
+        profile.addAttribute("exp", new Date(1_700_000_000_000L));
+        assertRoundTrip(new CompactProfileCodec(), Map.of(KEY1, profile));
+    }
+
+    @Test
+    public void testSerializedAttributes() {
+        final CommonProfile profile = buildProfile("carol", KEY1);
+        profile.addAttribute("set", new TreeSet<>(Set.of("a", "b")));
+        profile.addAttribute("immutableList", List.of("x", "y"));
+        profile.addAttribute("sqlDate", new java.sql.Date(5000L));
+        assertRoundTrip(new CompactProfileCodec(), Map.of(KEY1, profile));
+    }
+
+    @Test
+    public void testSerializedProfileWithFields() {
+        final FieldProfile profile = new FieldProfile();
+        profile.setId("dave");
+        profile.setToken("secret-token");
+        profile.addRole("ROLE_USER");
+        final Map<String, UserProfile> profiles = new LinkedHashMap<>();
+        profiles.put(KEY1, profile);
+        profiles.put(KEY2, buildProfile("dave-idp", KEY2));
+        final CompactProfileCodec codec = new CompactProfileCodec();
+        assertRoundTrip(codec, profiles);
+        assertEquals("secret-token", ((FieldProfile) codec.decode(codec.encode(profiles)).get(KEY1)).getToken());
+    }
+
+    @Test
+    public void testFieldsNotExternalizedAreNotRestored() {
+        final UnexternalizedFieldProfile profile = new UnexternalizedFieldProfile();
+        profile.setId("dave");
+        profile.setToken("secret-token");
+        final CompactProfileCodec codec = new CompactProfileCodec();
+        assertRoundTrip(codec, Map.of(KEY1, profile));
+        assertNull(((UnexternalizedFieldProfile) codec.decode(codec.encode(Map.of(KEY1, profile))).get(KEY1)).getToken());
+    }
+
+    @Test
+    public void testProfileWithoutNoArgConstructorCannotBeDecoded() {
+        final NoDefaultConstructorProfile profile = new NoDefaultConstructorProfile("erin");
+        final CompactProfileCodec codec = new CompactProfileCodec();
+        final byte[] data = codec.encode(Map.of(KEY1, profile));
+        assertThrows(TechnicalException.class, () -> codec.decode(data));
+    }
+
+    @Test
+    public void testUnsupportedVersion() {
+        final CompactProfileCodec codec = new CompactProfileCodec();
+        final byte[] data = codec.encode(buildProfiles());
+        data[0] = 0;
+        assertThrows(TechnicalException.class, () -> codec.decode(data));
+    }
+
+    /**
+     * Profile externalizing its own state, which the compact form cannot restore.
+     */
+    public static class FieldProfile extends CommonProfile {
+
+        private static final long serialVersionUID = 1L;
+
+        private String token;
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(final String token) {
+            this.token = token;
+        }
+
+        @Override
+        public void writeExternal(final ObjectOutput out) throws IOException {
+            super.writeExternal(out);
+            out.writeObject(token);
+        }
+
+        @Override
+        public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+            super.readExternal(in);
+            token = (String) in.readObject();
+        }
+    }
+
+    /**
+     * Profile with its own state, which the Java serialization does not restore either.
+     */
+    public static class UnexternalizedFieldProfile extends CommonProfile {
+
+        private static final long serialVersionUID = 1L;
+
+        private String token;
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(final String token) {
+            this.token = token;
+        }
+    }
+
+    /**
+     * Profile which cannot be built by reflection.
+     */
+    public static class NoDefaultConstructorProfile extends BasicUserProfile {
+
+        private static final long serialVersionUID = 1L;
+
+        public NoDefaultConstructorProfile(final String id) {
+            setId(id);
+        }
+    }
+}
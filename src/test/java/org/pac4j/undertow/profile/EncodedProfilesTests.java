@@ -0,0 +1,74 @@
+package org.pac4j.undertow.profile;
+
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.UserProfile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link EncodedProfiles}.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class EncodedProfilesTests {
+
+    private static CommonProfile buildProfile(final String id) {
+        final CommonProfile profile = new CommonProfile();
+        profile.setId(id);
+        profile.addRole("ROLE_USER");
+        return profile;
+    }
+
+    @Test
+    public void testCommonProfilesNeverExpire() {
+        final EncodedProfiles encodedProfiles = EncodedProfiles.encode(new CompactProfileCodec(), Map.of("client", buildProfile("alice")));
+        assertTrue(encodedProfiles.isNeverExpiring());
+        assertEquals("alice", encodedProfiles.getPrincipalId());
+    }
+
+    @Test
+    public void testExpirableProfileIsNotGuessed() {
+        final ExpirableProfile profile = new ExpirableProfile();
+        profile.setId("bob");
+        final Map<String, UserProfile> profiles = new LinkedHashMap<>();
+        profiles.put("client1", buildProfile("alice"));
+        profiles.put("client2", profile);
+        assertFalse(EncodedProfiles.encode(new CompactProfileCodec(), profiles).isNeverExpiring());
+    }
+
+    @Test
+    public void testHolds() {
+        final CommonProfile profile = buildProfile("alice");
+        final EncodedProfiles encodedProfiles = EncodedProfiles.encode(new CompactProfileCodec(), Map.of("client", profile));
+        assertTrue(encodedProfiles.holds(Map.of("client", profile)));
+        assertFalse(encodedProfiles.holds(Map.of("client", buildProfile("alice"))));
+        assertFalse(encodedProfiles.holds(Map.of()));
+    }
+
+    @Test
+    public void testDeserializedProfilesAreNotHeld() {
+        final CommonProfile profile = buildProfile("alice");
+        final EncodedProfiles encodedProfiles = EncodedProfiles.encode(new CompactProfileCodec(), Map.of("client", profile));
+        final EncodedProfiles copy = new EncodedProfiles(encodedProfiles.getData(), encodedProfiles.getPrincipalId(),
+            encodedProfiles.getRoles(), encodedProfiles.isNeverExpiring());
+        assertFalse(copy.holds(Map.of("client", profile)));
+    }
+
+    /**
+     * Profile with its own expiration rule, which only the profile manager applies.
+     */
+    public static class ExpirableProfile extends CommonProfile {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean isExpired() {
+            return false;
+        }
+    }
+}
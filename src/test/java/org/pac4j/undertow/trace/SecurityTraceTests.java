@@ -0,0 +1,111 @@
+package org.pac4j.undertow.trace;
+
+import io.undertow.server.HttpServerExchange;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link SecurityTrace}.
+ *
+ * @author agent
+ * @since 6.0.2
+ */
+public final class SecurityTraceTests {
+
+    private static final long PHASE_MILLIS = 20;
+
+    private static HttpServerExchange tracedExchange() {
+        final HttpServerExchange exchange = new HttpServerExchange(null);
+        exchange.putAttachment(SecurityTrace.ATTACHMENT_KEY, new SecurityTrace());
+        return exchange;
+    }
+
+    private static long micros(final HttpServerExchange exchange, final SecurityTrace.Phase phase) {
+        return exchange.getAttachment(SecurityTrace.ATTACHMENT_KEY).getMicros(phase);
+    }
+
+    @Test
+    public void testNestedPhasesAreExclusive() throws Exception {
+        final HttpServerExchange exchange = tracedExchange();
+        final long total = System.nanoTime();
+        final long logic = SecurityTrace.start(exchange);
+        Thread.sleep(PHASE_MILLIS);
+        final long retrieval = SecurityTrace.start(exchange);
+        Thread.sleep(PHASE_MILLIS);
+        final long lookup = SecurityTrace.start(exchange);
+        Thread.sleep(PHASE_MILLIS);
+        SecurityTrace.end(exchange, SecurityTrace.Phase.SESSION_LOOKUP, lookup);
+        SecurityTrace.end(exchange, SecurityTrace.Phase.PROFILE_RETRIEVAL, retrieval);
+        SecurityTrace.end(exchange, SecurityTrace.Phase.SECURITY_LOGIC, logic);
+        final long totalMicros = (System.nanoTime() - total) / 1000L;
+
+        final long logicMicros = micros(exchange, SecurityTrace.Phase.SECURITY_LOGIC);
+        final long retrievalMicros = micros(exchange, SecurityTrace.Phase.PROFILE_RETRIEVAL);
+        final long lookupMicros = micros(exchange, SecurityTrace.Phase.SESSION_LOOKUP);
+        assertTrue(logicMicros >= PHASE_MILLIS * 1000L, "logic: " + logicMicros);
+        assertTrue(retrievalMicros >= PHASE_MILLIS * 1000L, "retrieval: " + retrievalMicros);
+        assertTrue(lookupMicros >= PHASE_MILLIS * 1000L, "lookup: " + lookupMicros);
+        assertTrue(logicMicros + retrievalMicros + lookupMicros <= totalMicros);
+    }
+
+    @Test
+    public void testSiblingPhasesAreSubtractedFromTheParent() throws Exception {
+        final HttpServerExchange exchange = tracedExchange();
+        final long logic = SecurityTrace.start(exchange);
+        for (int i = 0; i < 2; i++) {
+            final long lookup = SecurityTrace.start(exchange);
+            Thread.sleep(PHASE_MILLIS);
+            SecurityTrace.end(exchange, SecurityTrace.Phase.SESSION_LOOKUP, lookup);
+        }
+        SecurityTrace.end(exchange, SecurityTrace.Phase.SECURITY_LOGIC, logic);
+        assertTrue(micros(exchange, SecurityTrace.Phase.SESSION_LOOKUP) >= 2 * PHASE_MILLIS * 1000L);
+        assertTrue(micros(exchange, SecurityTrace.Phase.SECURITY_LOGIC) < PHASE_MILLIS * 1000L);
+    }
+
+    @Test
+    public void testUnendedNestedPhaseIsDiscarded() {
+        final HttpServerExchange exchange = tracedExchange();
+        final long logic = SecurityTrace.start(exchange);
+        SecurityTrace.start(exchange);
+        SecurityTrace.end(exchange, SecurityTrace.Phase.SECURITY_LOGIC, logic);
+        final SecurityTrace trace = exchange.getAttachment(SecurityTrace.ATTACHMENT_KEY);
+        assertTrue(trace.isRecorded(SecurityTrace.Phase.SECURITY_LOGIC));
+        assertFalse(trace.isRecorded(SecurityTrace.Phase.SESSION_LOOKUP));
+
+        final long next = SecurityTrace.start(exchange);
+        assertEquals(1L, next);
+    }
+
+    @Test
+    public void testZeroTimePhaseIsRecorded() {
+        final HttpServerExchange exchange = tracedExchange();
+        final long logic = SecurityTrace.start(exchange);
+        SecurityTrace.end(exchange, SecurityTrace.Phase.LOGOUT_LOGIC, logic);
+        final SecurityTrace trace = exchange.getAttachment(SecurityTrace.ATTACHMENT_KEY);
+        assertTrue(trace.isRecorded(SecurityTrace.Phase.LOGOUT_LOGIC));
+        assertTrue(trace.toString().startsWith("LOGOUT_LOGIC="));
+    }
+
+    @Test
+    public void testDeepNesting() {
+        final HttpServerExchange exchange = tracedExchange();
+        final long[] tokens = new long[10];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = SecurityTrace.start(exchange);
+        }
+        for (int i = tokens.length - 1; i >= 0; i--) {
+            SecurityTrace.end(exchange, SecurityTrace.Phase.SESSION_LOOKUP, tokens[i]);
+        }
+        assertTrue(exchange.getAttachment(SecurityTrace.ATTACHMENT_KEY).isRecorded(SecurityTrace.Phase.SESSION_LOOKUP));
+    }
+
+    @Test
+    public void testUntracedExchange() {
+        final HttpServerExchange exchange = new HttpServerExchange(null);
+        final long token = SecurityTrace.start(exchange);
+        assertEquals(0L, token);
+        SecurityTrace.end(exchange, SecurityTrace.Phase.SECURITY_LOGIC, token);
+        assertNull(exchange.getAttachment(SecurityTrace.ATTACHMENT_KEY));
+    }
+}